@@ -1,83 +1,105 @@
-public class Account {
-    private String accountNumber;
-    private String accountHolderName;
-    private String accountType;
-    private double balance;
-    private boolean isActive;
-
-    public Account(String accountNumber, String accountHolderName, String accountType, double initialBalance) {
-        this.accountNumber = accountNumber;
-        this.accountHolderName = accountHolderName;
-        this.accountType = accountType;
-        this.balance = initialBalance;
-        this.isActive = true; // Account is active by default
-    }
-
-    // Deposit money
-    public void deposit(double amount) {
-        if (amount > 0) {
-            this.balance += amount;
-        }
-    }
-
-    // Withdraw money
-    public boolean withdraw(double amount) {
-        if (amount > 0 && amount <= this.balance) {
-            this.balance -= amount;
-            return true;
-        }
-        return false;
-    }
-
-    // Getters and Setters
-    public String getAccountNumber() {
-        return accountNumber;
-    }
-
-    public void setAccountNumber(String accountNumber) {
-        this.accountNumber = accountNumber;
-    }
-
-    public String getAccountHolderName() {
-        return accountHolderName;
-    }
-
-    public void setAccountHolderName(String accountHolderName) {
-        this.accountHolderName = accountHolderName;
-    }
-
-    public String getAccountType() {
-        return accountType;
-    }
-
-    public void setAccountType(String accountType) {
-        this.accountType = accountType;
-    }
-
-    public double getBalance() {
-        return balance;
-    }
-
-    public void setBalance(double balance) {
-        this.balance = balance;
-    }
-
-    public boolean isActive() {
-        return isActive;
-    }
-
-    public void setActive(boolean active) {
-        isActive = active;
-    }
-
-    @Override
-    public String toString() {
-        return "Account{" +
-                "accountNumber='" + accountNumber + '\'' +
-                ", accountHolderName='" + accountHolderName + '\'' +
-                ", accountType='" + accountType + '\'' +
-                ", balance=" + balance +
-                ", isActive=" + isActive +
-                '}';
-    }
-}
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Account {
+    private String accountNumber;
+    private String accountHolderName;
+    private String accountType;
+    // Whole cents, updated without locks: a deposit is one atomic add and a withdrawal a
+    // compare-and-set loop, so no interleaving of threads can overdraw the account
+    private final AtomicLong balanceCents;
+    private volatile boolean isActive;
+
+    public Account(String accountNumber, String accountHolderName, String accountType, double initialBalance) {
+        this.accountNumber = accountNumber;
+        this.accountHolderName = accountHolderName;
+        this.accountType = accountType;
+        this.balanceCents = new AtomicLong(toCents(initialBalance));
+        this.isActive = true; // Account is active by default
+    }
+
+    // Deposit money
+    public void deposit(double amount) {
+        long cents = toCents(amount);
+        if (cents > 0) {
+            balanceCents.addAndGet(cents);
+        }
+    }
+
+    // Withdraw money
+    // Retries only when another thread changed the balance in between; the funds check
+    // is repeated against each new balance, so it fails as soon as the money is gone
+    public boolean withdraw(double amount) {
+        long cents = toCents(amount);
+        if (cents <= 0) {
+            return false;
+        }
+        long balance = balanceCents.get();
+        while (cents <= balance) {
+            long witnessed = balanceCents.compareAndExchange(balance, balance - cents);
+            if (witnessed == balance) {
+                return true;
+            }
+            balance = witnessed;
+            Thread.onSpinWait(); // Lose the race politely on a hot account
+        }
+        return false;
+    }
+
+    // Getters and Setters
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public void setAccountNumber(String accountNumber) {
+        this.accountNumber = accountNumber;
+    }
+
+    public String getAccountHolderName() {
+        return accountHolderName;
+    }
+
+    public void setAccountHolderName(String accountHolderName) {
+        this.accountHolderName = accountHolderName;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    public void setAccountType(String accountType) {
+        this.accountType = accountType;
+    }
+
+    public double getBalance() {
+        return balanceCents.get() / 100.0;
+    }
+
+    public void setBalance(double balance) {
+        balanceCents.set(toCents(balance));
+    }
+
+    public boolean isActive() {
+        return isActive;
+    }
+
+    public void setActive(boolean active) {
+        isActive = active;
+    }
+
+    // Amounts are kept to the cent; anything finer is rounded half up. Callers that
+    // record an amount use the same rounding, so the record matches the balance change.
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    @Override
+    public String toString() {
+        return "Account{" +
+                "accountNumber='" + accountNumber + '\'' +
+                ", accountHolderName='" + accountHolderName + '\'' +
+                ", accountType='" + accountType + '\'' +
+                ", balance=" + getBalance() +
+                ", isActive=" + isActive +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+import java.time.LocalDateTime;
+
+// Running totals for one account, updated as each transaction is added so the
+// per-account summary queries are O(1) reads instead of scans of its history
+class AccountAggregates {
+    private double totalDeposits;
+    private double depositsCompensation;
+    private double totalWithdrawals;
+    private double withdrawalsCompensation;
+    private int transactionCount;
+    private LocalDateTime firstActivity;
+    private LocalDateTime lastActivity;
+
+    void add(Transaction transaction) {
+        switch (transaction.getType()) {
+            case DEPOSIT:
+            case TRANSFER_IN:
+                // Kahan summation, like the DoubleStream.sum() the scans use
+                double deposit = transaction.getAmount() - depositsCompensation;
+                double deposits = totalDeposits + deposit;
+                depositsCompensation = (deposits - totalDeposits) - deposit;
+                totalDeposits = deposits;
+                break;
+            case WITHDRAWAL:
+            case TRANSFER_OUT:
+                double withdrawal = transaction.getAmount() - withdrawalsCompensation;
+                double withdrawals = totalWithdrawals + withdrawal;
+                withdrawalsCompensation = (withdrawals - totalWithdrawals) - withdrawal;
+                totalWithdrawals = withdrawals;
+                break;
+            default:
+                break;
+        }
+
+        transactionCount++;
+        LocalDateTime timestamp = transaction.getTimestamp();
+        if (firstActivity == null || timestamp.isBefore(firstActivity)) {
+            firstActivity = timestamp;
+        }
+        if (lastActivity == null || timestamp.isAfter(lastActivity)) {
+            lastActivity = timestamp;
+        }
+    }
+
+    // A copy for callers outside the service's lock; nothing adds to it afterwards
+    AccountAggregates snapshot() {
+        AccountAggregates copy = new AccountAggregates();
+        copy.totalDeposits = totalDeposits;
+        copy.depositsCompensation = depositsCompensation;
+        copy.totalWithdrawals = totalWithdrawals;
+        copy.withdrawalsCompensation = withdrawalsCompensation;
+        copy.transactionCount = transactionCount;
+        copy.firstActivity = firstActivity;
+        copy.lastActivity = lastActivity;
+        return copy;
+    }
+
+    public double getTotalDeposits() {
+        return totalDeposits;
+    }
+
+    public double getTotalWithdrawals() {
+        return totalWithdrawals;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    // Null until the account has a transaction
+    public LocalDateTime getFirstActivity() {
+        return firstActivity;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+}
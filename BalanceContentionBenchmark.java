@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Contention benchmark for Account's lock-free balance against the synchronized one it
+// replaced. Every thread deposits into and withdraws from a small set of hot accounts,
+// like a merchant account receiving many transfers at once.
+//   java BalanceContentionBenchmark [threads] [hotAccounts] [millis]
+public class BalanceContentionBenchmark {
+    private static final int DEPOSIT_PERCENT = 80;
+
+    // The lock-based balance, as Account kept it before
+    private static class LockedAccount {
+        private double balance;
+
+        synchronized void deposit(double amount) {
+            if (amount > 0) {
+                balance += amount;
+            }
+        }
+
+        synchronized boolean withdraw(double amount) {
+            if (amount > 0 && amount <= balance) {
+                balance -= amount;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized double getBalance() {
+            return balance;
+        }
+    }
+
+    private interface Operations {
+        void deposit(int account, double amount);
+
+        boolean withdraw(int account, double amount);
+
+        double balance(int account);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int hotAccounts = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        System.out.printf("%d threads, %d hot account(s), %d ms per run, %d%% deposits%n",
+                threads, hotAccounts, millis, DEPOSIT_PERCENT);
+        for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+            Account[] atomic = new Account[hotAccounts];
+            LockedAccount[] locked = new LockedAccount[hotAccounts];
+            for (int i = 0; i < hotAccounts; i++) {
+                atomic[i] = new Account("ACC" + i, "Merchant " + i, "CHECKING", 0);
+                locked[i] = new LockedAccount();
+            }
+            run(round == 0 ? "warm-up lock-free" : "lock-free (CAS)", threads, hotAccounts, millis, new Operations() {
+                public void deposit(int account, double amount) {
+                    atomic[account].deposit(amount);
+                }
+
+                public boolean withdraw(int account, double amount) {
+                    return atomic[account].withdraw(amount);
+                }
+
+                public double balance(int account) {
+                    return atomic[account].getBalance();
+                }
+            });
+            run(round == 0 ? "warm-up synchronized" : "synchronized", threads, hotAccounts, millis, new Operations() {
+                public void deposit(int account, double amount) {
+                    locked[account].deposit(amount);
+                }
+
+                public boolean withdraw(int account, double amount) {
+                    return locked[account].withdraw(amount);
+                }
+
+                public double balance(int account) {
+                    return locked[account].getBalance();
+                }
+            });
+        }
+    }
+
+    // Whole-dollar amounts, so both versions must end on exactly the expected balance
+    private static void run(String name, int threads, int hotAccounts, long millis, Operations operations)
+            throws InterruptedException {
+        LongAdder operationCount = new LongAdder();
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long operationsDone = 0;
+                while ((operationsDone & 1023) != 0 || System.nanoTime() < deadline[0]) {
+                    int account = random.nextInt(hotAccounts);
+                    int amount = 1 + random.nextInt(100);
+                    if (random.nextInt(100) < DEPOSIT_PERCENT) {
+                        operations.deposit(account, amount);
+                        deposited.add(amount);
+                    } else if (operations.withdraw(account, amount)) {
+                        withdrawn.add(amount);
+                    }
+                    operationsDone++;
+                }
+                operationCount.add(operationsDone);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        double balance = 0;
+        for (int i = 0; i < hotAccounts; i++) {
+            balance += operations.balance(i);
+        }
+        double expected = deposited.sum() - withdrawn.sum();
+        System.out.printf("%-22s %,14.0f ops/s   balance %s%n", name, operationCount.sum() / seconds,
+                balance == expected ? "consistent" : String.format("WRONG: %.2f, expected %.2f", balance, expected));
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Client for BankingServer's line protocol. Each call sends one request and returns
+// the reply line ("OK ..." or "ERR ..."). Run on its own it is an interactive
+// terminal for the server:
+//   java BankingClient [host] [port]
+public class BankingClient implements Closeable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    public BankingClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    public String login(String accountNumber, String pin) throws IOException {
+        return send("LOGIN " + accountNumber + " " + pin);
+    }
+
+    public String balance() throws IOException {
+        return send("BALANCE");
+    }
+
+    public String deposit(double amount) throws IOException {
+        return send("DEPOSIT " + amount);
+    }
+
+    public String withdraw(double amount) throws IOException {
+        return send("WITHDRAW " + amount);
+    }
+
+    public String transfer(String toAccount, double amount) throws IOException {
+        return send("TRANSFER " + toAccount + " " + amount);
+    }
+
+    // The reply line followed by the page's rows; null cursor for the first page
+    public List<String> history(String cursor) throws IOException {
+        return sendForLines(cursor == null ? "HISTORY" : "HISTORY " + cursor);
+    }
+
+    public String logout() throws IOException {
+        return send("LOGOUT");
+    }
+
+    // Sends one request line and reads its one-line reply
+    public String send(String request) throws IOException {
+        out.write(request + "\n");
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("Server closed the connection");
+        }
+        return reply;
+    }
+
+    // Sends a request whose OK reply is followed by as many lines as its first number says
+    public List<String> sendForLines(String request) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String reply = send(request);
+        lines.add(reply);
+        if (reply.startsWith("OK ")) {
+            int rows = Integer.parseInt(reply.split(" ")[1]);
+            for (int i = 0; i < rows; i++) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw new IOException("Server closed the connection");
+                }
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            send("QUIT");
+        } catch (IOException e) {
+            // Already gone
+        } finally {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : BankingServer.DEFAULT_PORT;
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        try (BankingClient client = new BankingClient(host, port)) {
+            System.out.println("Connected to " + host + ":" + port
+                    + ". Commands: LOGIN, BALANCE, DEPOSIT, WITHDRAW, TRANSFER, HISTORY, LOGOUT, QUIT");
+            String line;
+            while ((line = console.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                List<String> reply = line.toUpperCase(Locale.ROOT).startsWith("HISTORY")
+                        ? client.sendForLines(line) : List.of(client.send(line));
+                reply.forEach(System.out::println);
+            }
+        }
+    }
+}
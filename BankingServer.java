@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves one BankingSystem to many sessions at once over a line protocol on a local
+// TCP port. A request is one line of space-separated words; a reply starts with OK or
+// with ERR <status> <message>, e.g. "ERR INSUFFICIENT_FUNDS Insufficient funds!".
+//   LOGIN <account> <pin>          OK <balance>
+//   BALANCE                        OK <balance>
+//   DEPOSIT <amount>               OK <new balance>
+//   WITHDRAW <amount>              OK <new balance>
+//   TRANSFER <account> <amount>    OK <new balance>
+//   HISTORY [cursor]               OK <rows> <next cursor, or - on the last page>, then
+//                                  one line per row: <yyyy-MM-dd HH:mm>|<type>|<amount>|<description>
+//   LOGOUT                         OK
+//   QUIT                           OK, then the connection is closed
+// Every command but LOGIN and QUIT needs a logged-in session. The account is checked
+// again before each of them: once it is deleted or suspended, the command fails with
+// that status and the session is logged out. Amounts are written with a '.' whatever
+// the server's locale. A request longer than MAX_REQUEST_CHARS gets
+// "ERR BAD_REQUEST Request too long" and the connection is closed.
+class BankingServer implements Closeable {
+    public static final int DEFAULT_PORT = 7070;
+    private static final int BACKLOG = 4096; // Lets thousands of clients connect at once
+    private static final int MAX_REQUEST_CHARS = 1024; // Far longer than any valid request
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final BankingSystem bankingSystem;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    // The account a connection is logged in to
+    private static class Session {
+        private String accountNumber;
+        private String pin;
+    }
+
+    // Listens on the loopback interface only; port 0 picks a free port
+    BankingServer(BankingSystem bankingSystem, int port) throws IOException {
+        this.bankingSystem = bankingSystem;
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessions = newSessionExecutor();
+        this.acceptor = new Thread(this::acceptConnections, "banking-server-accept");
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Returns once the server is closed
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    // Stops accepting; sessions already open run until their clients disconnect
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        sessions.shutdown();
+    }
+
+    // A virtual thread per session on runtimes that have them (Java 21+). Older runtimes
+    // get a cached pool of platform threads, which grows to one thread per open session.
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "banking-session-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+                continue;
+            }
+            try {
+                sessions.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket); // Closed while this connection was being accepted
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            connection.setTcpNoDelay(true);
+            Session session = new Session();
+            StringBuilder request = new StringBuilder();
+            String line;
+            while ((line = readRequest(in, request)) != null) {
+                if (line.length() > MAX_REQUEST_CHARS) {
+                    error(out, "BAD_REQUEST", "Request too long");
+                    out.flush();
+                    break;
+                }
+                boolean open = handle(session, line.trim(), out);
+                out.flush();
+                if (!open) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; closing the socket is all there is to do
+        }
+    }
+
+    // The next request line without its terminator, or null at the end of the stream.
+    // Stops reading one character past MAX_REQUEST_CHARS, so a client cannot make the
+    // session buffer an endless line.
+    private static String readRequest(BufferedReader in, StringBuilder request) throws IOException {
+        request.setLength(0);
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            request.append((char) c);
+            if (request.length() > MAX_REQUEST_CHARS) {
+                break;
+            }
+        }
+        return c == -1 && request.length() == 0 ? null : request.toString();
+    }
+
+    // Writes the reply to one request; false once the client has asked to quit
+    private boolean handle(Session session, String line, Writer out) throws IOException {
+        String[] words = line.isEmpty() ? new String[0] : line.split("\\s+");
+        String command = words.length > 0 ? words[0].toUpperCase(Locale.ROOT) : "";
+        try {
+            switch (command) {
+                case "LOGIN":
+                    expectWords(words, 3, 3);
+                    OperationResult login = bankingSystem.authenticate(words[1], words[2]);
+                    if (login.isSuccess()) {
+                        session.accountNumber = words[1];
+                        session.pin = words[2];
+                    }
+                    reply(out, login);
+                    return true;
+                case "LOGOUT":
+                    session.accountNumber = null;
+                    session.pin = null;
+                    out.write("OK\n");
+                    return true;
+                case "QUIT":
+                    out.write("OK\n");
+                    return false;
+                default:
+                    break;
+            }
+            if (session.accountNumber == null) {
+                error(out, "NOT_LOGGED_IN", "Log in first");
+                return true;
+            }
+            OperationResult access = bankingSystem.authenticate(session.accountNumber, session.pin);
+            if (!access.isSuccess()) {
+                session.accountNumber = null;
+                session.pin = null;
+                reply(out, access);
+                return true;
+            }
+            switch (command) {
+                case "BALANCE":
+                    expectWords(words, 1, 1);
+                    reply(out, access);
+                    break;
+                case "DEPOSIT":
+                    expectWords(words, 2, 2);
+                    reply(out, bankingSystem.depositFunds(session.accountNumber, session.pin, parseAmount(words[1])));
+                    break;
+                case "WITHDRAW":
+                    expectWords(words, 2, 2);
+                    reply(out, bankingSystem.withdrawFunds(session.accountNumber, session.pin, parseAmount(words[1])));
+                    break;
+                case "TRANSFER":
+                    expectWords(words, 3, 3);
+                    reply(out, bankingSystem.transferFunds(session.accountNumber, session.pin, words[1],
+                            parseAmount(words[2])));
+                    break;
+                case "HISTORY":
+                    expectWords(words, 1, 2);
+                    writeHistory(out, bankingSystem.getTransactionHistoryPage(session.accountNumber,
+                            words.length > 1 ? words[1] : null));
+                    break;
+                default:
+                    error(out, "UNKNOWN_COMMAND", "Unknown command: " + command);
+            }
+        } catch (IllegalArgumentException e) {
+            error(out, "BAD_REQUEST", e.getMessage());
+        }
+        return true;
+    }
+
+    private static void writeHistory(Writer out, Page<Transaction> page) throws IOException {
+        out.write("OK " + page.getItems().size() + " " + (page.hasNext() ? page.getNextCursor() : "-") + "\n");
+        for (Transaction transaction : page.getItems()) {
+            out.write(transaction.getTimestamp().format(TIMESTAMP) + "|" + transaction.getType() + "|"
+                    + String.format(Locale.ROOT, "%.2f", transaction.getAmount()) + "|" + transaction.getDescription() + "\n");
+        }
+    }
+
+    private static void reply(Writer out, OperationResult result) throws IOException {
+        if (result.isSuccess()) {
+            out.write("OK " + String.format(Locale.ROOT, "%.2f", result.getBalance()) + "\n");
+        } else {
+            error(out, result.getStatus().name(), result.getMessage());
+        }
+    }
+
+    private static void error(Writer out, String status, String message) throws IOException {
+        out.write("ERR " + status + " " + message + "\n");
+    }
+
+    private static void expectWords(String[] words, int min, int max) {
+        if (words.length < min || words.length > max) {
+            throw new IllegalArgumentException("Wrong number of arguments for " + words[0].toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static double parseAmount(String text) {
+        try {
+            double amount = Double.parseDouble(text);
+            if (Double.isFinite(amount)) {
+                return amount;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid amount: " + text);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to do with it
+        }
+    }
+}
@@ -1,529 +1,1022 @@
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.HashMap;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Scanner;
-
-public class BankingSystem {
-    private static final String ADMIN_PASSWORD = "admin123";
-    private Map<String, Customer> customers;
-    private AccountService accountService;
-    private TransactionService transactionService;
-    private FileManager fileManager;
-    private Scanner scanner;
-
-    public BankingSystem() {
-        this.customers = new HashMap<>();
-        this.accountService = new AccountService();
-        this.transactionService = new TransactionService();
-        this.fileManager = new FileManager();
-        this.scanner = new Scanner(System.in);
-        loadData();
-    }
-
-    public boolean adminLogin(String password) {
-        return ADMIN_PASSWORD.equals(password);
-    }
-
-    public String createCustomer(String name, String pin, String accountType, double initialDeposit) {
-        try {
-            // Validate PIN format (4 digits)
-            if (!isValidPin(pin)) {
-                System.out.println("Invalid PIN! PIN must be exactly 4 digits.");
-                return null;
-            }
-
-            String accountNumber = generateAccountNumber();
-            Account account = new Account(accountNumber, name, accountType, initialDeposit);
-            Customer customer = new Customer(name, pin, account);
-
-            customers.put(accountNumber, customer);
-
-            // Record initial deposit transaction
-            if (initialDeposit > 0) {
-                Transaction transaction = new Transaction(
-                        accountNumber,
-                        "DEPOSIT",
-                        initialDeposit,
-                        "Initial deposit"
-                );
-                transactionService.addTransaction(transaction);
-            }
-
-            saveData();
-            System.out.println("Account created successfully!");
-            System.out.println("Account Number: " + accountNumber);
-            System.out.println("Name: " + name);
-            System.out.println("Account Type: " + accountType);
-            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
-            return accountNumber;
-        } catch (Exception e) {
-            System.out.println("Error creating customer: " + e.getMessage());
-            return null;
-        }
-    }
-
-    public Customer customerLogin(String accountNumber, String pin) {
-        Customer customer = customers.get(accountNumber);
-        if (customer != null && customer.validatePin(pin)) {
-            if (!customer.getAccount().isActive()) {
-                System.out.println("Account is suspended. Please contact admin.");
-                return null;
-            }
-            System.out.println("Login successful! Welcome, " + customer.getName());
-            return customer;
-        }
-        System.out.println("Invalid account number or PIN!");
-        return null;
-    }
-
-    public boolean deposit(String accountNumber, String pin, double amount) {
-        // Verify PIN before transaction
-        Customer customer = customers.get(accountNumber);
-        if (customer == null || !customer.validatePin(pin)) {
-            System.out.println("Transaction failed: Invalid account number or PIN!");
-            return false;
-        }
-
-        if (!customer.getAccount().isActive()) {
-            System.out.println("Transaction failed: Account is suspended!");
-            return false;
-        }
-
-        if (amount <= 0) {
-            System.out.println("Transaction failed: Invalid deposit amount!");
-            return false;
-        }
-
-        customer.getAccount().deposit(amount);
-
-        Transaction transaction = new Transaction(
-                accountNumber,
-                "DEPOSIT",
-                amount,
-                "Cash deposit"
-        );
-        transactionService.addTransaction(transaction);
-
-        saveData();
-        System.out.println("Deposit successful!");
-        System.out.println("Amount deposited: $" + String.format("%.2f", amount));
-        System.out.println("New balance: $" + String.format("%.2f", customer.getAccount().getBalance()));
-        return true;
-    }
-
-    public boolean withdraw(String accountNumber, String pin, double amount) {
-        // Verify PIN before transaction
-        Customer customer = customers.get(accountNumber);
-        if (customer == null || !customer.validatePin(pin)) {
-            System.out.println("Transaction failed: Invalid account number or PIN!");
-            return false;
-        }
-
-        if (!customer.getAccount().isActive()) {
-            System.out.println("Transaction failed: Account is suspended!");
-            return false;
-        }
-
-        if (amount <= 0) {
-            System.out.println("Transaction failed: Invalid withdrawal amount!");
-            return false;
-        }
-
-        // Check available funds
-        if (customer.getAccount().getBalance() < amount) {
-            System.out.println("Transaction failed: Insufficient funds!");
-            System.out.println("Available balance: $" + String.format("%.2f", customer.getAccount().getBalance()));
-            return false;
-        }
-
-        if (customer.getAccount().withdraw(amount)) {
-            Transaction transaction = new Transaction(
-                    accountNumber,
-                    "WITHDRAWAL",
-                    amount,
-                    "Cash withdrawal"
-            );
-            transactionService.addTransaction(transaction);
-
-            saveData();
-            System.out.println("Withdrawal successful!");
-            System.out.println("Amount withdrawn: $" + String.format("%.2f", amount));
-            System.out.println("New balance: $" + String.format("%.2f", customer.getAccount().getBalance()));
-            return true;
-        }
-        return false;
-    }
-
-    public boolean transfer(String fromAccount, String fromPin, String toAccount, double amount) {
-        // Verify PIN for source account
-        Customer fromCustomer = customers.get(fromAccount);
-        if (fromCustomer == null || !fromCustomer.validatePin(fromPin)) {
-            System.out.println("Transfer failed: Invalid source account number or PIN!");
-            return false;
-        }
-
-        Customer toCustomer = customers.get(toAccount);
-        if (toCustomer == null) {
-            System.out.println("Transfer failed: Destination account not found!");
-            return false;
-        }
-
-        if (!fromCustomer.getAccount().isActive() || !toCustomer.getAccount().isActive()) {
-            System.out.println("Transfer failed: One or both accounts are suspended!");
-            return false;
-        }
-
-        if (amount <= 0) {
-            System.out.println("Transfer failed: Invalid transfer amount!");
-            return false;
-        }
-
-        // Check available funds
-        if (fromCustomer.getAccount().getBalance() < amount) {
-            System.out.println("Transfer failed: Insufficient funds!");
-            System.out.println("Available balance: $" + String.format("%.2f", fromCustomer.getAccount().getBalance()));
-            return false;
-        }
-
-        if (fromCustomer.getAccount().withdraw(amount)) {
-            toCustomer.getAccount().deposit(amount);
-
-            // Record withdrawal transaction
-            Transaction withdrawalTransaction = new Transaction(
-                    fromAccount,
-                    "TRANSFER_OUT",
-                    amount,
-                    "Transfer to " + toAccount
-            );
-            transactionService.addTransaction(withdrawalTransaction);
-
-            // Record deposit transaction
-            Transaction depositTransaction = new Transaction(
-                    toAccount,
-                    "TRANSFER_IN",
-                    amount,
-                    "Transfer from " + fromAccount
-            );
-            transactionService.addTransaction(depositTransaction);
-
-            saveData();
-            System.out.println("Transfer successful!");
-            System.out.println("Amount transferred: $" + String.format("%.2f", amount));
-            System.out.println("New balance: $" + String.format("%.2f", fromCustomer.getAccount().getBalance()));
-            return true;
-        }
-        return false;
-    }
-
-    public void checkBalance(String accountNumber, String pin) {
-        Customer customer = customers.get(accountNumber);
-        if (customer == null || !customer.validatePin(pin)) {
-            System.out.println("Balance inquiry failed: Invalid account number or PIN!");
-            return;
-        }
-
-        if (!customer.getAccount().isActive()) {
-            System.out.println("Balance inquiry failed: Account is suspended!");
-            return;
-        }
-
-        System.out.println("\n=== BALANCE INQUIRY ===");
-        System.out.println("Account Number: " + accountNumber);
-        System.out.println("Account Holder: " + customer.getName());
-        System.out.println("Account Type: " + customer.getAccount().getAccountType());
-        System.out.println("Current Balance: $" + String.format("%.2f", customer.getAccount().getBalance()));
-        System.out.println("Account Status: " + (customer.getAccount().isActive() ? "Active" : "Suspended"));
-    }
-
-    public void viewRecentTransactions(String accountNumber, String pin, int limit) {
-        Customer customer = customers.get(accountNumber);
-        if (customer == null || !customer.validatePin(pin)) {
-            System.out.println("Transaction history failed: Invalid account number or PIN!");
-            return;
-        }
-
-        System.out.println("\n=== RECENT TRANSACTION HISTORY ===");
-        List<Transaction> transactions = transactionService.getTransactionsByAccount(accountNumber);
-
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found for this account.");
-            return;
-        }
-
-        // Show only the most recent transactions (limit)
-        int start = Math.max(0, transactions.size() - limit);
-        List<Transaction> recentTransactions = transactions.subList(start, transactions.size());
-
-        System.out.printf("%-20s %-15s %-15s %-30s%n",
-                "Date/Time", "Type", "Amount", "Description");
-        System.out.println("=".repeat(85));
-
-        for (int i = recentTransactions.size() - 1; i >= 0; i--) {
-            Transaction transaction = recentTransactions.get(i);
-            System.out.printf("%-20s %-15s $%-14.2f %-30s%n",
-                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                    transaction.getType(),
-                    transaction.getAmount(),
-                    transaction.getDescription()
-            );
-        }
-    }
-
-    // User interface methods
-    public void customerInterface() {
-        System.out.println("\n=== CUSTOMER BANKING INTERFACE ===");
-
-        while (true) {
-            System.out.println("\n1. Create New Account");
-            System.out.println("2. Login to Existing Account");
-            System.out.println("3. Exit");
-            System.out.print("Choose an option: ");
-
-            int choice = scanner.nextInt();
-            scanner.nextLine(); // consume newline
-
-            switch (choice) {
-                case 1:
-                    createAccountInterface();
-                    break;
-                case 2:
-                    loginInterface();
-                    break;
-                case 3:
-                    System.out.println("Thank you for using our banking system!");
-                    return;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private void createAccountInterface() {
-        System.out.println("\n=== CREATE NEW ACCOUNT ===");
-
-        System.out.print("Enter your name: ");
-        String name = scanner.nextLine();
-
-        System.out.print("Enter a 4-digit PIN: ");
-        String pin = scanner.nextLine();
-
-        System.out.print("Enter account type (SAVINGS/CHECKING): ");
-        String accountType = scanner.nextLine().toUpperCase();
-
-        System.out.print("Enter initial deposit amount: $");
-        double initialDeposit = scanner.nextDouble();
-        scanner.nextLine(); // consume newline
-
-        String accountNumber = createCustomer(name, pin, accountType, initialDeposit);
-
-        if (accountNumber != null) {
-            System.out.println("\nAccount created successfully!");
-            System.out.println("Please save your account number: " + accountNumber);
-        }
-    }
-
-    private void loginInterface() {
-        System.out.println("\n=== LOGIN ===");
-
-        System.out.print("Enter account number: ");
-        String accountNumber = scanner.nextLine();
-
-        System.out.print("Enter PIN: ");
-        String pin = scanner.nextLine();
-
-        Customer customer = customerLogin(accountNumber, pin);
-
-        if (customer != null) {
-            customerMenu(accountNumber, pin);
-        }
-    }
-
-    private void customerMenu(String accountNumber, String pin) {
-        while (true) {
-            System.out.println("\n=== CUSTOMER MENU ===");
-            System.out.println("1. Check Balance");
-            System.out.println("2. Deposit Money");
-            System.out.println("3. Withdraw Money");
-            System.out.println("4. Transfer Money");
-            System.out.println("5. View Recent Transactions");
-            System.out.println("6. View All Transaction History");
-            System.out.println("7. Logout");
-            System.out.print("Choose an option: ");
-
-            int choice = scanner.nextInt();
-            scanner.nextLine(); // consume newline
-
-            switch (choice) {
-                case 1:
-                    checkBalance(accountNumber, pin);
-                    break;
-                case 2:
-                    depositInterface(accountNumber, pin);
-                    break;
-                case 3:
-                    withdrawInterface(accountNumber, pin);
-                    break;
-                case 4:
-                    transferInterface(accountNumber, pin);
-                    break;
-                case 5:
-                    viewRecentTransactions(accountNumber, pin, 5);
-                    break;
-                case 6:
-                    viewTransactionHistory(accountNumber);
-                    break;
-                case 7:
-                    System.out.println("Logged out successfully!");
-                    return;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private void depositInterface(String accountNumber, String pin) {
-        System.out.print("Enter deposit amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // consume newline
-
-        deposit(accountNumber, pin, amount);
-    }
-
-    private void withdrawInterface(String accountNumber, String pin) {
-        System.out.print("Enter withdrawal amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // consume newline
-
-        withdraw(accountNumber, pin, amount);
-    }
-
-    private void transferInterface(String accountNumber, String pin) {
-        System.out.print("Enter destination account number: ");
-        String toAccount = scanner.nextLine();
-
-        System.out.print("Enter transfer amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // consume newline
-
-        transfer(accountNumber, pin, toAccount, amount);
-    }
-
-    // Helper method to validate PIN format
-    private boolean isValidPin(String pin) {
-        return pin != null && pin.matches("\\d{4}");
-    }
-
-    // Admin methods (unchanged)
-    public void viewAllCustomers() {
-        System.out.println("\n=== ALL CUSTOMERS ===");
-        if (customers.isEmpty()) {
-            System.out.println("No customers found.");
-            return;
-        }
-
-        System.out.printf("%-15s %-20s %-15s %-15s %-10s%n",
-                "Account No", "Name", "Type", "Balance", "Status");
-        System.out.println("=".repeat(80));
-
-        for (Customer customer : customers.values()) {
-            Account account = customer.getAccount();
-            System.out.printf("%-15s %-20s %-15s $%-14.2f %-10s%n",
-                    account.getAccountNumber(),
-                    customer.getName(),
-                    account.getAccountType(),
-                    account.getBalance(),
-                    account.isActive() ? "Active" : "Suspended"
-            );
-        }
-    }
-
-    public void viewAllTransactions() {
-        System.out.println("\n=== ALL TRANSACTIONS ===");
-        List<Transaction> transactions = transactionService.getAllTransactions();
-
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found.");
-            return;
-        }
-
-        System.out.printf("%-15s %-20s %-15s %-15s %-30s%n",
-                "Account No", "Date/Time", "Type", "Amount", "Description");
-        System.out.println("=".repeat(100));
-
-        for (Transaction transaction : transactions) {
-            System.out.printf("%-15s %-20s %-15s $%-14.2f %-30s%n",
-                    transaction.getAccountNumber(),
-                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                    transaction.getType(),
-                    transaction.getAmount(),
-                    transaction.getDescription()
-            );
-        }
-    }
-
-    public boolean deleteCustomer(String accountNumber) {
-        if (customers.containsKey(accountNumber)) {
-            customers.remove(accountNumber);
-            saveData();
-            return true;
-        }
-        return false;
-    }
-
-    public boolean toggleAccountStatus(String accountNumber) {
-        Customer customer = customers.get(accountNumber);
-        if (customer != null) {
-            Account account = customer.getAccount();
-            account.setActive(!account.isActive());
-            saveData();
-            return true;
-        }
-        return false;
-    }
-
-    public void viewTransactionHistory(String accountNumber) {
-        System.out.println("\n=== TRANSACTION HISTORY ===");
-        List<Transaction> transactions = transactionService.getTransactionsByAccount(accountNumber);
-
-        if (transactions.isEmpty()) {
-            System.out.println("No transactions found for this account.");
-            return;
-        }
-
-        System.out.printf("%-20s %-15s %-15s %-30s%n",
-                "Date/Time", "Type", "Amount", "Description");
-        System.out.println("=".repeat(85));
-
-        for (Transaction transaction : transactions) {
-            System.out.printf("%-20s %-15s $%-14.2f %-30s%n",
-                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                    transaction.getType(),
-                    transaction.getAmount(),
-                    transaction.getDescription()
-            );
-        }
-    }
-
-    private String generateAccountNumber() {
-        return "ACC" + System.currentTimeMillis();
-    }
-
-    private void loadData() {
-        customers = fileManager.loadCustomers();
-        transactionService.setTransactions(fileManager.loadTransactions());
-    }
-
-    private void saveData() {
-        fileManager.saveCustomers(customers);
-        fileManager.saveTransactions(transactionService.getAllTransactions());
-    }
-
-    // Main method for testing
-    public static void main(String[] args) {
-        BankingSystem bankingSystem = new BankingSystem();
-        bankingSystem.customerInterface();
-    }
-}
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.EnumMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+
+public class BankingSystem {
+    private static final String ADMIN_PASSWORD = "admin123";
+    // -Dbanking.streamingHistory=true keeps only an index and the most recent
+    // transactions in memory, paging older history in from disk when it is viewed
+    private static final boolean STREAMING_HISTORY = Boolean.getBoolean("banking.streamingHistory");
+    private static final int RESIDENT_TRANSACTIONS = Integer.getInteger("banking.residentTransactions", 10000);
+    // -Dbanking.pageSize=N sets how many rows the listings show per page
+    private static final int PAGE_SIZE = Math.max(1, Integer.getInteger("banking.pageSize", 20));
+    // -Dbanking.sequencer=true applies every mutation on one business thread, in the
+    // order of a ring of -Dbanking.sequencer.ringSize slots, instead of under locks
+    private static final boolean SEQUENCED = Boolean.getBoolean("banking.sequencer");
+    private static final int SEQUENCER_RING_SIZE = Integer.getInteger("banking.sequencer.ringSize", 1024);
+    // Accounts hash onto this many locks (a power of two); operations on accounts in
+    // different stripes run in parallel
+    private static final int LOCK_STRIPES = 256;
+    private static final int BATCH_FAILURES_SHOWN = 10;
+    // Ordered by account number, so listings can page. Concurrent, so lookups and
+    // listings never block on the per-account locks below.
+    private volatile NavigableMap<String, Customer> customers;
+    // An account's journal appends are made under its stripe's lock, so they reach the
+    // journal in order. Transfers, status changes and deletions hold it throughout.
+    private final Object[] accountLocks = new Object[LOCK_STRIPES];
+    // New transactions are timestamped, added in memory and given their place in the
+    // journal as one step across accounts, so rows are appended in time order (which
+    // range queries rely on) and streaming mode pages them out in log order. Waiting
+    // for a group commit happens after it is released.
+    private final Object appendOrder = new Object();
+    private LocalDateTime lastTimestamp = LocalDateTime.MIN; // Guarded by appendOrder
+    private final Object checkpointLock = new Object();
+    private final AtomicLong lastAccountNumber = new AtomicLong();
+    private AccountService accountService;
+    private TransactionService transactionService;
+    private FileManager fileManager;
+    private Scanner scanner;
+    // Statistics are reused until the next mutation. Each mutation bumps the generation
+    // once its records are on disk, and figures are only reused if computed in the
+    // current one, so a computation that overlapped a mutation is never served after it.
+    private final AtomicLong statisticsGeneration = new AtomicLong();
+    private volatile CachedStatistics statistics;
+    private final MutationSequencer sequencer; // Null unless in sequencer mode
+
+    public BankingSystem() {
+        this(SEQUENCED);
+    }
+
+    BankingSystem(boolean sequenced) {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            accountLocks[i] = new Object();
+        }
+        this.customers = new ConcurrentSkipListMap<>();
+        this.accountService = new AccountService();
+        this.transactionService = new TransactionService();
+        this.fileManager = new FileManager();
+        this.scanner = new Scanner(System.in);
+        loadData();
+        this.sequencer = sequenced ? new MutationSequencer(this, SEQUENCER_RING_SIZE) : null;
+    }
+
+    public boolean adminLogin(String password) {
+        return ADMIN_PASSWORD.equals(password);
+    }
+
+    public String createCustomer(String name, String pin, String accountType, double initialDeposit) {
+        try {
+            // Validate PIN format (4 digits)
+            if (!isValidPin(pin)) {
+                System.out.println("Invalid PIN! PIN must be exactly 4 digits.");
+                return null;
+            }
+
+            String accountNumber;
+            if (sequencer != null) {
+                accountNumber = sequencer.createCustomer(name, pin, accountType, initialDeposit).join();
+            } else {
+                accountNumber = generateAccountNumber();
+                synchronized (lockFor(accountNumber)) {
+                    List<Customer> changedCustomers = new ArrayList<>(1);
+                    List<Transaction> newTransactions = new ArrayList<>(1);
+                    openAccount(accountNumber, name, pin, accountType, initialDeposit, changedCustomers,
+                            newTransactions);
+                    record(changedCustomers, newTransactions);
+                }
+                afterPersist();
+            }
+            System.out.println("Account created successfully!");
+            System.out.println("Account Number: " + accountNumber);
+            System.out.println("Name: " + name);
+            System.out.println("Account Type: " + accountType);
+            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
+            return accountNumber;
+        } catch (Exception e) {
+            System.out.println("Error creating customer: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Opens an account under a new number and returns the number; the new customer and
+    // its initial deposit are added to the collections given for journaling
+    String applyCreate(String name, String pin, String accountType, double initialDeposit,
+                       Collection<Customer> changedCustomers, List<Transaction> newTransactions) {
+        String accountNumber = generateAccountNumber();
+        openAccount(accountNumber, name, pin, accountType, initialDeposit, changedCustomers, newTransactions);
+        return accountNumber;
+    }
+
+    private void openAccount(String accountNumber, String name, String pin, String accountType, double initialDeposit,
+                             Collection<Customer> changedCustomers, List<Transaction> newTransactions) {
+        double openingBalance = Account.toCents(initialDeposit) / 100.0; // As the account holds it
+        Account account = new Account(accountNumber, name, accountType, openingBalance);
+        Customer customer = new Customer(name, pin, account);
+        customers.put(accountNumber, customer);
+        changedCustomers.add(customer);
+
+        // Record initial deposit transaction
+        if (openingBalance > 0) {
+            newTransactions.add(new Transaction(
+                    accountNumber,
+                    TransactionType.DEPOSIT,
+                    openingBalance,
+                    "Initial deposit"
+            ));
+        }
+    }
+
+    public Customer customerLogin(String accountNumber, String pin) {
+        Customer customer = customers.get(accountNumber);
+        if (customer != null && customer.validatePin(pin)) {
+            if (!customer.getAccount().isActive()) {
+                System.out.println("Account is suspended. Please contact admin.");
+                return null;
+            }
+            System.out.println("Login successful! Welcome, " + customer.getName());
+            return customer;
+        }
+        System.out.println("Invalid account number or PIN!");
+        return null;
+    }
+
+    public boolean deposit(String accountNumber, String pin, double amount) {
+        OperationResult result = depositFunds(accountNumber, pin, amount);
+        if (!result.isSuccess()) {
+            System.out.println("Transaction failed: " + result.getMessage());
+            return false;
+        }
+        System.out.println("Deposit successful!");
+        System.out.println("Amount deposited: $" + String.format("%.2f", amount));
+        System.out.println("New balance: $" + String.format("%.2f", result.getBalance()));
+        return true;
+    }
+
+    public boolean withdraw(String accountNumber, String pin, double amount) {
+        OperationResult result = withdrawFunds(accountNumber, pin, amount);
+        if (!result.isSuccess()) {
+            printFailure("Transaction failed: ", result);
+            return false;
+        }
+        System.out.println("Withdrawal successful!");
+        System.out.println("Amount withdrawn: $" + String.format("%.2f", amount));
+        System.out.println("New balance: $" + String.format("%.2f", result.getBalance()));
+        return true;
+    }
+
+    public boolean transfer(String fromAccount, String fromPin, String toAccount, double amount) {
+        OperationResult result = transferFunds(fromAccount, fromPin, toAccount, amount);
+        if (!result.isSuccess()) {
+            printFailure("Transfer failed: ", result);
+            return false;
+        }
+        System.out.println("Transfer successful!");
+        System.out.println("Amount transferred: $" + String.format("%.2f", amount));
+        System.out.println("New balance: $" + String.format("%.2f", result.getBalance()));
+        return true;
+    }
+
+    private void printFailure(String prefix, OperationResult result) {
+        System.out.println(prefix + result.getMessage());
+        if (result.getStatus() == OperationResult.Status.INSUFFICIENT_FUNDS) {
+            System.out.println("Available balance: $" + String.format("%.2f", result.getBalance()));
+        }
+    }
+
+    // The operations below report their outcome instead of printing it. Each changes
+    // the balance and journals it as one step under the account's stripe lock, so no
+    // other record of the account can carry the new balance before its transaction is
+    // journaled. In sequencer mode they are applied by the sequencer's business thread
+    // instead.
+    public OperationResult depositFunds(String accountNumber, String pin, double amount) {
+        if (sequencer != null) {
+            return sequencer.deposit(accountNumber, pin, amount).join();
+        }
+        return applyAndJournal(BatchOperation.Kind.DEPOSIT, accountNumber, pin, amount, "Cash deposit");
+    }
+
+    public OperationResult withdrawFunds(String accountNumber, String pin, double amount) {
+        if (sequencer != null) {
+            return sequencer.withdraw(accountNumber, pin, amount).join();
+        }
+        return applyAndJournal(BatchOperation.Kind.WITHDRAWAL, accountNumber, pin, amount, "Cash withdrawal");
+    }
+
+    // The balance in the result is the source account's
+    public OperationResult transferFunds(String fromAccount, String fromPin, String toAccount, double amount) {
+        if (sequencer != null) {
+            return sequencer.transfer(fromAccount, fromPin, toAccount, amount).join();
+        }
+        // Both accounts are locked, always in stripe order, so two opposite transfers
+        // cannot each hold one lock while waiting for the other
+        Object first = lockFor(fromAccount);
+        Object second = lockFor(toAccount);
+        if (stripe(fromAccount) > stripe(toAccount)) {
+            Object swap = first;
+            first = second;
+            second = swap;
+        }
+        OperationResult result;
+        synchronized (first) {
+            synchronized (second) {
+                List<Customer> changedCustomers = new ArrayList<>(2);
+                List<Transaction> newTransactions = new ArrayList<>(2);
+                result = applyOperation(BatchOperation.Kind.TRANSFER, fromAccount, fromPin, toAccount, amount, null,
+                        changedCustomers, newTransactions);
+                if (!result.isSuccess()) {
+                    return result;
+                }
+                record(changedCustomers, newTransactions);
+            }
+        }
+        afterPersist();
+        return result;
+    }
+
+    private OperationResult applyAndJournal(BatchOperation.Kind kind, String accountNumber, String pin, double amount,
+                                            String description) {
+        List<Customer> changedCustomers = new ArrayList<>(1);
+        List<Transaction> newTransactions = new ArrayList<>(1);
+        OperationResult result;
+        synchronized (lockFor(accountNumber)) {
+            result = applyOperation(kind, accountNumber, pin, null, amount, description,
+                    changedCustomers, newTransactions);
+            if (!result.isSuccess()) {
+                return result;
+            }
+            record(changedCustomers, newTransactions);
+        }
+        afterPersist();
+        return result;
+    }
+
+    // Validates a deposit, withdrawal or transfer and applies it to the balances. The
+    // accounts it changed and the transactions to journal are added to the collections
+    // given; nothing is added if it fails. A null PIN is not checked, for the bank's own
+    // feeds. The caller makes sure nothing else applies a transfer on these accounts
+    // at the same time: it holds their locks or is the sequencer's business thread.
+    OperationResult applyOperation(BatchOperation.Kind kind, String accountNumber, String pin, String toAccount,
+                                   double amount, String description, Collection<Customer> changedCustomers,
+                                   List<Transaction> newTransactions) {
+        boolean transfer = kind == BatchOperation.Kind.TRANSFER;
+        Customer customer = customers.get(accountNumber);
+        if (pin == null && customer == null) {
+            return OperationResult.failure(OperationResult.Status.ACCOUNT_NOT_FOUND, "Account not found!");
+        }
+        // Verify PIN before transaction
+        if (pin != null && (customer == null || !customer.validatePin(pin))) {
+            return OperationResult.failure(OperationResult.Status.INVALID_CREDENTIALS,
+                    transfer ? "Invalid source account number or PIN!" : "Invalid account number or PIN!");
+        }
+        Customer toCustomer = null;
+        if (transfer) {
+            toCustomer = customers.get(toAccount);
+            if (toCustomer == null) {
+                return OperationResult.failure(OperationResult.Status.ACCOUNT_NOT_FOUND,
+                        "Destination account not found!");
+            }
+        }
+        if (!customer.getAccount().isActive() || (transfer && !toCustomer.getAccount().isActive())) {
+            return OperationResult.failure(OperationResult.Status.ACCOUNT_SUSPENDED,
+                    transfer ? "One or both accounts are suspended!" : "Account is suspended!");
+        }
+        // Balances move in whole cents, so validate and record the amount as rounded; an
+        // amount that rounds to nothing is invalid rather than a no-op success
+        long cents = Account.toCents(amount);
+        if (cents <= 0) {
+            return OperationResult.failure(OperationResult.Status.INVALID_AMOUNT,
+                    "Invalid " + kind.name().toLowerCase() + " amount!");
+        }
+        double applied = cents / 100.0;
+
+        switch (kind) {
+            case DEPOSIT:
+                customer.getAccount().deposit(applied);
+                newTransactions.add(new Transaction(accountNumber, TransactionType.DEPOSIT, applied, description));
+                break;
+            case WITHDRAWAL:
+                // The funds check and the debit are one atomic step
+                if (!customer.getAccount().withdraw(applied)) {
+                    return OperationResult.failure(OperationResult.Status.INSUFFICIENT_FUNDS, "Insufficient funds!",
+                            customer.getAccount().getBalance());
+                }
+                newTransactions.add(new Transaction(accountNumber, TransactionType.WITHDRAWAL, applied, description));
+                break;
+            case TRANSFER:
+                if (!customer.getAccount().withdraw(applied)) {
+                    return OperationResult.failure(OperationResult.Status.INSUFFICIENT_FUNDS, "Insufficient funds!",
+                            customer.getAccount().getBalance());
+                }
+                toCustomer.getAccount().deposit(applied);
+                newTransactions.add(Transaction.transfer(accountNumber, TransactionType.TRANSFER_OUT, applied,
+                        toAccount));
+                newTransactions.add(Transaction.transfer(toAccount, TransactionType.TRANSFER_IN, applied,
+                        accountNumber));
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation: " + kind);
+        }
+        changedCustomers.add(customer);
+        if (transfer) {
+            changedCustomers.add(toCustomer);
+        }
+        return OperationResult.ok(customer.getAccount().getBalance());
+    }
+
+    // Applies a feed of operations, such as a payroll run, and returns one result per
+    // item in input order. Items are checked like their single counterparts, less the
+    // PIN; a failed item is reported and the rest still go ahead. Every account the batch
+    // touches is locked for its duration, and the batch is journaled as one append that
+    // writes each changed account's record once, with its final balance.
+    public List<OperationResult> processBatch(List<BatchOperation> operations) {
+        if (sequencer != null) {
+            return sequencer.exclusive(() -> applyBatch(operations)).join();
+        }
+        return applyBatch(operations);
+    }
+
+    private List<OperationResult> applyBatch(List<BatchOperation> operations) {
+        boolean[] touched = new boolean[LOCK_STRIPES];
+        for (BatchOperation operation : operations) {
+            touched[stripe(operation.getAccountNumber())] = true;
+            if (operation.getKind() == BatchOperation.Kind.TRANSFER) {
+                touched[stripe(operation.getToAccount())] = true;
+            }
+        }
+        List<OperationResult> results = new ArrayList<>(operations.size());
+        withStripeLocks(touched, 0, () -> {
+            Set<Customer> changedCustomers = new LinkedHashSet<>();
+            List<Transaction> newTransactions = new ArrayList<>();
+            for (BatchOperation operation : operations) {
+                results.add(applyOperation(operation.getKind(), operation.getAccountNumber(), null,
+                        operation.getToAccount(), operation.getAmount(), operation.getDescription(),
+                        changedCustomers, newTransactions));
+            }
+            if (!newTransactions.isEmpty()) {
+                record(new ArrayList<>(changedCustomers), newTransactions);
+            }
+        });
+        afterPersist();
+        return results;
+    }
+
+    // Takes the touched stripe locks from the given one upwards, in stripe order like
+    // transferFunds, then runs the action holding all of them
+    private void withStripeLocks(boolean[] touched, int from, Runnable action) {
+        int next = from;
+        while (next < LOCK_STRIPES && !touched[next]) {
+            next++;
+        }
+        if (next == LOCK_STRIPES) {
+            action.run();
+            return;
+        }
+        synchronized (accountLocks[next]) {
+            withStripeLocks(touched, next + 1, action);
+        }
+    }
+
+    // Whether the account number and PIN match an active account; the result carries
+    // the current balance
+    public OperationResult authenticate(String accountNumber, String pin) {
+        Customer customer = customers.get(accountNumber);
+        if (customer == null || !customer.validatePin(pin)) {
+            return OperationResult.failure(OperationResult.Status.INVALID_CREDENTIALS, "Invalid account number or PIN!");
+        }
+        if (!customer.getAccount().isActive()) {
+            return OperationResult.failure(OperationResult.Status.ACCOUNT_SUSPENDED, "Account is suspended!");
+        }
+        return OperationResult.ok(customer.getAccount().getBalance());
+    }
+
+    public void checkBalance(String accountNumber, String pin) {
+        Customer customer = customers.get(accountNumber);
+        if (customer == null || !customer.validatePin(pin)) {
+            System.out.println("Balance inquiry failed: Invalid account number or PIN!");
+            return;
+        }
+
+        if (!customer.getAccount().isActive()) {
+            System.out.println("Balance inquiry failed: Account is suspended!");
+            return;
+        }
+
+        System.out.println("\n=== BALANCE INQUIRY ===");
+        System.out.println("Account Number: " + accountNumber);
+        System.out.println("Account Holder: " + customer.getName());
+        System.out.println("Account Type: " + customer.getAccount().getAccountType());
+        System.out.println("Current Balance: $" + String.format("%.2f", customer.getAccount().getBalance()));
+        System.out.println("Account Status: " + (customer.getAccount().isActive() ? "Active" : "Suspended"));
+    }
+
+    public void viewRecentTransactions(String accountNumber, String pin, int limit) {
+        Customer customer = customers.get(accountNumber);
+        if (customer == null || !customer.validatePin(pin)) {
+            System.out.println("Transaction history failed: Invalid account number or PIN!");
+            return;
+        }
+
+        System.out.println("\n=== RECENT TRANSACTION HISTORY ===");
+        List<Transaction> recentTransactions = transactionService.getRecentTransactions(accountNumber, limit);
+
+        if (recentTransactions.isEmpty()) {
+            System.out.println("No transactions found for this account.");
+            return;
+        }
+
+        System.out.printf("%-20s %-15s %-15s %-30s%n",
+                "Date/Time", "Type", "Amount", "Description");
+        System.out.println("=".repeat(85));
+
+        for (int i = recentTransactions.size() - 1; i >= 0; i--) {
+            Transaction transaction = recentTransactions.get(i);
+            System.out.printf("%-20s %-15s $%-14.2f %-30s%n",
+                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription()
+            );
+        }
+    }
+
+    // User interface methods
+    public void customerInterface() {
+        System.out.println("\n=== CUSTOMER BANKING INTERFACE ===");
+
+        while (true) {
+            System.out.println("\n1. Create New Account");
+            System.out.println("2. Login to Existing Account");
+            System.out.println("3. Exit");
+            System.out.print("Choose an option: ");
+
+            int choice = scanner.nextInt();
+            scanner.nextLine(); // consume newline
+
+            switch (choice) {
+                case 1:
+                    createAccountInterface();
+                    break;
+                case 2:
+                    loginInterface();
+                    break;
+                case 3:
+                    System.out.println("Thank you for using our banking system!");
+                    return;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private void createAccountInterface() {
+        System.out.println("\n=== CREATE NEW ACCOUNT ===");
+
+        System.out.print("Enter your name: ");
+        String name = scanner.nextLine();
+
+        System.out.print("Enter a 4-digit PIN: ");
+        String pin = scanner.nextLine();
+
+        System.out.print("Enter account type (SAVINGS/CHECKING): ");
+        String accountType = scanner.nextLine().toUpperCase();
+
+        System.out.print("Enter initial deposit amount: $");
+        double initialDeposit = scanner.nextDouble();
+        scanner.nextLine(); // consume newline
+
+        String accountNumber = createCustomer(name, pin, accountType, initialDeposit);
+
+        if (accountNumber != null) {
+            System.out.println("\nAccount created successfully!");
+            System.out.println("Please save your account number: " + accountNumber);
+        }
+    }
+
+    private void loginInterface() {
+        System.out.println("\n=== LOGIN ===");
+
+        System.out.print("Enter account number: ");
+        String accountNumber = scanner.nextLine();
+
+        System.out.print("Enter PIN: ");
+        String pin = scanner.nextLine();
+
+        Customer customer = customerLogin(accountNumber, pin);
+
+        if (customer != null) {
+            customerMenu(accountNumber, pin);
+        }
+    }
+
+    private void customerMenu(String accountNumber, String pin) {
+        while (true) {
+            System.out.println("\n=== CUSTOMER MENU ===");
+            System.out.println("1. Check Balance");
+            System.out.println("2. Deposit Money");
+            System.out.println("3. Withdraw Money");
+            System.out.println("4. Transfer Money");
+            System.out.println("5. View Recent Transactions");
+            System.out.println("6. View All Transaction History");
+            System.out.println("7. Logout");
+            System.out.print("Choose an option: ");
+
+            int choice = scanner.nextInt();
+            scanner.nextLine(); // consume newline
+
+            switch (choice) {
+                case 1:
+                    checkBalance(accountNumber, pin);
+                    break;
+                case 2:
+                    depositInterface(accountNumber, pin);
+                    break;
+                case 3:
+                    withdrawInterface(accountNumber, pin);
+                    break;
+                case 4:
+                    transferInterface(accountNumber, pin);
+                    break;
+                case 5:
+                    viewRecentTransactions(accountNumber, pin, 5);
+                    break;
+                case 6:
+                    viewTransactionHistory(accountNumber);
+                    break;
+                case 7:
+                    System.out.println("Logged out successfully!");
+                    return;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private void depositInterface(String accountNumber, String pin) {
+        System.out.print("Enter deposit amount: $");
+        double amount = scanner.nextDouble();
+        scanner.nextLine(); // consume newline
+
+        deposit(accountNumber, pin, amount);
+    }
+
+    private void withdrawInterface(String accountNumber, String pin) {
+        System.out.print("Enter withdrawal amount: $");
+        double amount = scanner.nextDouble();
+        scanner.nextLine(); // consume newline
+
+        withdraw(accountNumber, pin, amount);
+    }
+
+    private void transferInterface(String accountNumber, String pin) {
+        System.out.print("Enter destination account number: ");
+        String toAccount = scanner.nextLine();
+
+        System.out.print("Enter transfer amount: $");
+        double amount = scanner.nextDouble();
+        scanner.nextLine(); // consume newline
+
+        transfer(accountNumber, pin, toAccount, amount);
+    }
+
+    // Helper method to validate PIN format
+    private boolean isValidPin(String pin) {
+        return pin != null && pin.matches("\\d{4}");
+    }
+
+    // Customers in account-number order; the cursor is the last account number shown
+    public Page<Customer> getCustomersPage(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        List<Customer> items = new ArrayList<>();
+        String last = null;
+        for (Map.Entry<String, Customer> entry : (cursor == null ? customers : customers.tailMap(cursor, false)).entrySet()) {
+            if (items.size() == pageSize) {
+                return new Page<>(items, last);
+            }
+            items.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page<>(items, null);
+    }
+
+    // Admin methods. The listings print one page and return the next page's cursor,
+    // or null on the last page.
+    public String viewAllCustomers(String cursor) {
+        System.out.println("\n=== ALL CUSTOMERS ===");
+        Page<Customer> page = getCustomersPage(cursor, PAGE_SIZE);
+        if (page.getItems().isEmpty()) {
+            System.out.println("No customers found.");
+            return null;
+        }
+
+        System.out.printf("%-15s %-20s %-15s %-15s %-10s%n",
+                "Account No", "Name", "Type", "Balance", "Status");
+        System.out.println("=".repeat(80));
+
+        for (Customer customer : page.getItems()) {
+            Account account = customer.getAccount();
+            System.out.printf("%-15s %-20s %-15s $%-14.2f %-10s%n",
+                    account.getAccountNumber(),
+                    customer.getName(),
+                    account.getAccountType(),
+                    account.getBalance(),
+                    account.isActive() ? "Active" : "Suspended"
+            );
+        }
+        return page.getNextCursor();
+    }
+
+    public String viewAllTransactions(String cursor) {
+        System.out.println("\n=== ALL TRANSACTIONS ===");
+        Page<Transaction> page = transactionService.getTransactionsPage(cursor, PAGE_SIZE);
+
+        if (page.getItems().isEmpty()) {
+            System.out.println("No transactions found.");
+            return null;
+        }
+
+        System.out.printf("%-15s %-20s %-15s %-15s %-30s%n",
+                "Account No", "Date/Time", "Type", "Amount", "Description");
+        System.out.println("=".repeat(100));
+
+        for (Transaction transaction : page.getItems()) {
+            System.out.printf("%-15s %-20s %-15s $%-14.2f %-30s%n",
+                    transaction.getAccountNumber(),
+                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription()
+            );
+        }
+        return page.getNextCursor();
+    }
+
+    // Streams the matches straight to the screen, so a broad search is never held in memory
+    public void searchTransactions(TransactionQuery query) {
+        System.out.println("\n=== SEARCH RESULTS ===");
+        System.out.println("Plan: " + transactionService.explain(query));
+
+        System.out.printf("%-15s %-20s %-15s %-15s %-30s%n",
+                "Account No", "Date/Time", "Type", "Amount", "Description");
+        System.out.println("=".repeat(100));
+
+        long count = 0;
+        for (Transaction transaction : (Iterable<Transaction>) transactionService.query(query)::iterator) {
+            System.out.printf("%-15s %-20s %-15s $%-14.2f %-30s%n",
+                    transaction.getAccountNumber(),
+                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription());
+            count++;
+        }
+        System.out.println("=".repeat(100));
+        System.out.println(count + " matching transaction(s)");
+    }
+
+    // Applies a batch file with one operation per line, in the form BatchOperation.parse
+    // reads; blank lines and lines starting with # are skipped. Malformed lines are
+    // reported and left out, and the rest are applied as one batch.
+    public void processBatchFile(String path) {
+        System.out.println("\n=== BATCH RESULTS ===");
+        List<BatchOperation> operations = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        int malformed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    operations.add(BatchOperation.parse(line));
+                    lineNumbers.add(lineNumber);
+                } catch (IllegalArgumentException e) {
+                    if (malformed++ < BATCH_FAILURES_SHOWN) {
+                        System.out.println("Line " + lineNumber + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Could not read batch file: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<OperationResult> results = processBatch(operations);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            OperationResult result = results.get(i);
+            if (!result.isSuccess() && failed++ < BATCH_FAILURES_SHOWN) {
+                System.out.println("Line " + lineNumbers.get(i) + ": " + result);
+            }
+        }
+        System.out.println("=".repeat(40));
+        System.out.printf("%d operation(s) processed in %d ms: %d succeeded, %d failed%n",
+                results.size(), millis, results.size() - failed, failed);
+        if (malformed > 0) {
+            System.out.println(malformed + " malformed line(s) skipped");
+        }
+        if (failed > BATCH_FAILURES_SHOWN || malformed > BATCH_FAILURES_SHOWN) {
+            System.out.println("(Only the first " + BATCH_FAILURES_SHOWN + " of each are listed)");
+        }
+    }
+
+    // Every transaction made on the given day, with totals per type
+    public void viewEndOfDayReport(LocalDate date) {
+        System.out.println("\n=== END-OF-DAY REPORT: " + date + " ===");
+        List<Transaction> transactions = transactionService.getAllTransactionsByDateRange(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+
+        if (transactions.isEmpty()) {
+            System.out.println("No transactions found for this day.");
+            return;
+        }
+
+        System.out.printf("%-15s %-20s %-15s %-15s %-30s%n",
+                "Account No", "Date/Time", "Type", "Amount", "Description");
+        System.out.println("=".repeat(100));
+
+        Map<TransactionType, Double> totals = new EnumMap<>(TransactionType.class);
+        for (Transaction transaction : transactions) {
+            System.out.printf("%-15s %-20s %-15s $%-14.2f %-30s%n",
+                    transaction.getAccountNumber(),
+                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription()
+            );
+            totals.merge(transaction.getType(), transaction.getAmount(), Double::sum);
+        }
+
+        System.out.println("=".repeat(100));
+        System.out.println("Transactions: " + transactions.size());
+        for (TransactionType type : TransactionType.values()) {
+            System.out.printf("%-15s $%.2f%n", type, totals.getOrDefault(type, 0.0));
+        }
+    }
+
+    public boolean deleteCustomer(String accountNumber) {
+        if (sequencer != null) {
+            return sequencer.exclusive(() -> removeCustomer(accountNumber)).join();
+        }
+        return removeCustomer(accountNumber);
+    }
+
+    private boolean removeCustomer(String accountNumber) {
+        synchronized (lockFor(accountNumber)) {
+            if (customers.remove(accountNumber) != null) {
+                fileManager.appendDeletion(accountNumber);
+                afterPersist();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean toggleAccountStatus(String accountNumber) {
+        if (sequencer != null) {
+            return sequencer.toggleAccountStatus(accountNumber).join();
+        }
+        synchronized (lockFor(accountNumber)) {
+            List<Customer> changedCustomers = new ArrayList<>(1);
+            if (!applyToggleStatus(accountNumber, changedCustomers)) {
+                return false;
+            }
+            record(changedCustomers, Collections.emptyList());
+        }
+        afterPersist();
+        return true;
+    }
+
+    // Suspends an active account or reactivates a suspended one; false if there is no
+    // such account
+    boolean applyToggleStatus(String accountNumber, Collection<Customer> changedCustomers) {
+        Customer customer = customers.get(accountNumber);
+        if (customer == null) {
+            return false;
+        }
+        Account account = customer.getAccount();
+        account.setActive(!account.isActive());
+        changedCustomers.add(customer);
+        return true;
+    }
+
+    // Publish-to-reply latency of the sequencer's mutations; null unless in sequencer mode
+    LatencyHistogram getSequencerLatency() {
+        return sequencer != null ? sequencer.getLatency() : null;
+    }
+
+    public SystemStatistics getSystemStatistics() {
+        long generation = statisticsGeneration.get();
+        CachedStatistics cached = statistics;
+        if (cached != null && cached.generation == generation) {
+            return cached.statistics;
+        }
+        SystemStatistics computed = SystemStatistics.compute(customers.values(), transactionService.getStatistics());
+        statistics = new CachedStatistics(generation, computed);
+        return computed;
+    }
+
+    private static class CachedStatistics {
+        final long generation;
+        final SystemStatistics statistics;
+
+        CachedStatistics(long generation, SystemStatistics statistics) {
+            this.generation = generation;
+            this.statistics = statistics;
+        }
+    }
+
+    public AccountAggregates getAccountActivity(String accountNumber) {
+        return transactionService.getAggregates(accountNumber);
+    }
+
+    // One page of an account's history, for callers that render it themselves
+    public Page<Transaction> getTransactionHistoryPage(String accountNumber, String cursor) {
+        return transactionService.getTransactionsPageByAccount(accountNumber, cursor, PAGE_SIZE);
+    }
+
+    public String viewTransactionHistory(String accountNumber, String cursor) {
+        System.out.println("\n=== TRANSACTION HISTORY ===");
+        Page<Transaction> page = transactionService.getTransactionsPageByAccount(accountNumber, cursor, PAGE_SIZE);
+
+        if (page.getItems().isEmpty()) {
+            System.out.println("No transactions found for this account.");
+            return null;
+        }
+
+        System.out.printf("%-20s %-15s %-15s %-30s%n",
+                "Date/Time", "Type", "Amount", "Description");
+        System.out.println("=".repeat(85));
+        printHistoryRows(page.getItems());
+        return page.getNextCursor();
+    }
+
+    // The whole history in one listing, still read a page at a time
+    public void viewTransactionHistory(String accountNumber) {
+        String cursor = viewTransactionHistory(accountNumber, null);
+        while (cursor != null) {
+            Page<Transaction> page = transactionService.getTransactionsPageByAccount(accountNumber, cursor, PAGE_SIZE);
+            printHistoryRows(page.getItems());
+            cursor = page.getNextCursor();
+        }
+    }
+
+    private void printHistoryRows(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            System.out.printf("%-20s %-15s $%-14.2f %-30s%n",
+                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription()
+            );
+        }
+    }
+
+    // Incremental on top of the latest backup unless a full backup is requested
+    public String backupData(boolean full) {
+        return fileManager.backupData(full);
+    }
+
+    public void viewBackups() {
+        System.out.println("\n=== AVAILABLE BACKUPS ===");
+        List<String> backups = fileManager.listBackups();
+        if (backups.isEmpty()) {
+            System.out.println("No backups found.");
+            return;
+        }
+        for (String backupId : backups) {
+            System.out.printf("%-25s %-12s%n", backupId,
+                    fileManager.isIncrementalBackup(backupId) ? "Incremental" : "Full");
+        }
+    }
+
+    // Replaces the data files with the backup's and reloads everything from them
+    public boolean restoreBackup(String backupId) {
+        if (sequencer != null) {
+            return sequencer.exclusive(() -> restore(backupId)).join();
+        }
+        return restore(backupId);
+    }
+
+    // Holds every stripe lock, so no mutation runs between the files being replaced and
+    // the data being reloaded. One waiting for its lock looks its account up afresh in
+    // the reloaded data once it has it.
+    private boolean restore(String backupId) {
+        boolean[] allStripes = new boolean[LOCK_STRIPES];
+        Arrays.fill(allStripes, true);
+        boolean[] restored = new boolean[1];
+        withStripeLocks(allStripes, 0, () -> {
+            if (fileManager.restoreBackup(backupId)) {
+                loadData();
+                restored[0] = true;
+            }
+        });
+        return restored[0];
+    }
+
+    // Release persistence resources before the JVM exits
+    public void shutdown() {
+        if (sequencer != null) {
+            sequencer.close(); // Applies and journals everything already submitted
+        }
+        fileManager.checkpoint(customers);
+        fileManager.close();
+    }
+
+    // Millisecond-based as before, but never the same number twice when accounts are
+    // opened in the same millisecond
+    private String generateAccountNumber() {
+        return "ACC" + lastAccountNumber.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
+
+    private int stripe(String accountNumber) {
+        int hash = accountNumber != null ? accountNumber.hashCode() : 0;
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private Object lockFor(String accountNumber) {
+        return accountLocks[stripe(accountNumber)];
+    }
+
+    // Timestamps the new transactions, adds them to the service and journals the
+    // mutation. Callers hold the locks of the accounts involved, or are the sequencer's
+    // journal thread.
+    void record(List<Customer> changedCustomers, List<Transaction> newTransactions) {
+        CompletableFuture<Void> journaled;
+        synchronized (appendOrder) {
+            LocalDateTime now = LocalDateTime.now();
+            if (now.isBefore(lastTimestamp)) {
+                now = lastTimestamp; // The clock stepped back; keep the rows in order
+            }
+            lastTimestamp = now;
+            for (Transaction transaction : newTransactions) {
+                transaction.setTimestamp(now);
+            }
+            transactionService.addTransactions(newTransactions);
+            journaled = fileManager.enqueueMutation(changedCustomers, newTransactions);
+        }
+        fileManager.awaitJournaled(journaled);
+    }
+
+    private void loadData() {
+        customers = new ConcurrentSkipListMap<>(fileManager.loadCustomers());
+        statisticsGeneration.incrementAndGet();
+        if (STREAMING_HISTORY) {
+            transactionService.enableStreaming(fileManager, RESIDENT_TRANSACTIONS);
+        } else {
+            transactionService.loadTransactions(fileManager::loadTransactions);
+        }
+        checkpointIfDue(); // A long journal tail was replayed, so fold it into a new snapshot
+    }
+
+    // Housekeeping once a mutation's records are on disk
+    void afterPersist() {
+        statisticsGeneration.incrementAndGet();
+        transactionService.pageOutIfFull();
+        checkpointIfDue();
+    }
+
+    // Only one thread writes a due checkpoint; any queued behind it then find it done
+    private void checkpointIfDue() {
+        if (fileManager.isCheckpointDue()) {
+            synchronized (checkpointLock) {
+                if (fileManager.isCheckpointDue()) {
+                    fileManager.checkpoint(customers);
+                }
+            }
+        }
+    }
+
+    // Main method for testing
+    public static void main(String[] args) {
+        BankingSystem bankingSystem = new BankingSystem();
+        bankingSystem.customerInterface();
+    }
+}
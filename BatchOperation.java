@@ -0,0 +1,108 @@
+import java.util.Objects;
+
+// One item of a batch for BankingSystem.processBatch, e.g. a payroll deposit. Batches
+// come from the bank's own feeds, so items carry no PIN. Descriptions are stored as the
+// last field of a journal record, so they may not contain the field separator.
+class BatchOperation {
+    enum Kind {
+        DEPOSIT,
+        WITHDRAWAL,
+        TRANSFER
+    }
+
+    private final Kind kind;
+    private final String accountNumber;
+    private final String toAccount; // Transfers only
+    private final double amount;
+    private final String description; // Deposits and withdrawals only
+
+    private BatchOperation(Kind kind, String accountNumber, String toAccount, double amount, String description) {
+        if (description != null && (description.indexOf('|') >= 0 || description.indexOf('\n') >= 0
+                || description.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("Description may not contain '|' or line breaks");
+        }
+        this.kind = kind;
+        this.accountNumber = Objects.requireNonNull(accountNumber, "accountNumber");
+        this.toAccount = kind == Kind.TRANSFER ? Objects.requireNonNull(toAccount, "toAccount") : null;
+        this.amount = amount;
+        this.description = description;
+    }
+
+    public static BatchOperation deposit(String accountNumber, double amount) {
+        return deposit(accountNumber, amount, "Cash deposit");
+    }
+
+    public static BatchOperation deposit(String accountNumber, double amount, String description) {
+        return new BatchOperation(Kind.DEPOSIT, accountNumber, null, amount, description);
+    }
+
+    public static BatchOperation withdrawal(String accountNumber, double amount) {
+        return new BatchOperation(Kind.WITHDRAWAL, accountNumber, null, amount, "Cash withdrawal");
+    }
+
+    public static BatchOperation transfer(String fromAccount, String toAccount, double amount) {
+        return new BatchOperation(Kind.TRANSFER, fromAccount, toAccount, amount, null);
+    }
+
+    // One line of a batch file, in the words of the server protocol:
+    //   DEPOSIT <account> <amount> [description]
+    //   WITHDRAW <account> <amount>
+    //   TRANSFER <from account> <to account> <amount>
+    public static BatchOperation parse(String line) {
+        String[] words = line.trim().split("\\s+", 4);
+        switch (words[0].toUpperCase()) {
+            case "DEPOSIT":
+                if (words.length >= 3) {
+                    return words.length == 4 ? deposit(words[1], parseAmount(words[2]), words[3])
+                            : deposit(words[1], parseAmount(words[2]));
+                }
+                break;
+            case "WITHDRAW":
+                if (words.length == 3) {
+                    return withdrawal(words[1], parseAmount(words[2]));
+                }
+                break;
+            case "TRANSFER":
+                if (words.length == 4) {
+                    return transfer(words[1], words[2], parseAmount(words[3]));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + words[0]);
+        }
+        throw new IllegalArgumentException("Wrong number of fields for " + words[0].toUpperCase());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // The source account of a transfer
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getToAccount() {
+        return toAccount;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    private static double parseAmount(String text) {
+        try {
+            double amount = Double.parseDouble(text);
+            if (Double.isFinite(amount)) {
+                return amount;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid amount: " + text);
+    }
+}
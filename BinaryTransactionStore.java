@@ -0,0 +1,278 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fixed-width binary transaction store, an alternative to the pipe-delimited transactions.txt.
+//   <base>.dat   32-byte records: account id, type code, epoch micros, amount in cents,
+//                description offset and length
+//   <base>.acct  account numbers, one per line; the line number is the account id
+//   <base>.desc  UTF-8 description bytes referenced from the records
+// Records with the same description share its bytes, and a transfer stores no text
+// at all: its length is TRANSFER_DESCRIPTION and its offset the counterparty's id.
+// Records are scanned through memory-mapped windows of the file, so history can be
+// aggregated without building a Transaction per row.
+class BinaryTransactionStore implements Closeable {
+    public static final int RECORD_SIZE = 32;
+
+    private static final int ACCOUNT_ID = 0;
+    private static final int TYPE_CODE = 4;
+    private static final int EPOCH_MICROS = 8;
+    private static final int AMOUNT_CENTS = 16;
+    private static final int DESCRIPTION_OFFSET = 24;
+    private static final int DESCRIPTION_LENGTH = 28;
+
+    private static final int TRANSFER_DESCRIPTION = -1;
+    private static final int SHARED_DESCRIPTION_LIMIT = 1024; // Distinct descriptions remembered per session
+    private static final int SHARED_DESCRIPTION_MAX_BYTES = 64;
+    // Windows hold a whole number of records, so none straddles two
+    private static final int WINDOW_RECORDS = 1 << 21; // 64 MB
+    private static final long WINDOW_BYTES = (long) WINDOW_RECORDS * RECORD_SIZE;
+
+    public interface RecordVisitor {
+        void visit(int row, int accountId, byte typeCode, long epochMicros, long amountCents);
+    }
+
+    private final FileChannel records;
+    private final FileChannel descriptions;
+    private final FileChannel accounts;
+    private final List<String> accountNumbers = new ArrayList<>();
+    private final Map<String, Integer> accountIds = new HashMap<>();
+    private final Map<String, Long> sharedDescriptions = new HashMap<>(); // Offset << 32 | length
+
+    private final List<MappedByteBuffer> windows = new ArrayList<>();
+
+    public BinaryTransactionStore(String baseName) throws IOException {
+        this.records = open(baseName + ".dat");
+        this.descriptions = open(baseName + ".desc");
+        this.accounts = open(baseName + ".acct");
+
+        // Drop a torn record left behind by a crash in the middle of an append
+        long complete = records.size() - records.size() % RECORD_SIZE;
+        if (complete != records.size()) {
+            records.truncate(complete);
+        }
+
+        for (String accountNumber : Files.readAllLines(Paths.get(baseName + ".acct"), StandardCharsets.UTF_8)) {
+            registerAccount(accountNumber);
+        }
+    }
+
+    public static boolean exists(String baseName) {
+        return new File(baseName + ".dat").exists();
+    }
+
+    public static void delete(String baseName) {
+        new File(baseName + ".dat").delete();
+        new File(baseName + ".desc").delete();
+        new File(baseName + ".acct").delete();
+    }
+
+    // Descriptions and new account ids are written before the records that point at them
+    public synchronized void append(List<Transaction> transactions) throws IOException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * transactions.size());
+        ByteArrayOutputStream newDescriptions = new ByteArrayOutputStream();
+        StringBuilder newAccounts = new StringBuilder();
+        long descriptionBase = descriptions.size();
+
+        for (Transaction transaction : transactions) {
+            int accountId = accountIdFor(transaction.getAccountNumber(), newAccounts);
+
+            int descriptionOffset;
+            int descriptionLength;
+            if (transaction.getCounterparty() != null) {
+                descriptionOffset = accountIdFor(transaction.getCounterparty(), newAccounts);
+                descriptionLength = TRANSFER_DESCRIPTION;
+            } else {
+                Long shared = sharedDescriptions.get(transaction.getDescription());
+                if (shared != null) {
+                    descriptionOffset = (int) (shared >>> 32);
+                    descriptionLength = (int) (long) shared;
+                } else {
+                    byte[] description = transaction.getDescription().getBytes(StandardCharsets.UTF_8);
+                    long offset = descriptionBase + newDescriptions.size();
+                    if (offset + description.length > Integer.MAX_VALUE) {
+                        throw new IOException("Description heap is full");
+                    }
+                    newDescriptions.write(description);
+                    descriptionOffset = (int) offset;
+                    descriptionLength = description.length;
+                    if (description.length <= SHARED_DESCRIPTION_MAX_BYTES
+                            && sharedDescriptions.size() < SHARED_DESCRIPTION_LIMIT) {
+                        sharedDescriptions.put(transaction.getDescription(), offset << 32 | descriptionLength);
+                    }
+                }
+            }
+
+            int base = batch.position();
+            batch.putInt(base + ACCOUNT_ID, accountId);
+            batch.put(base + TYPE_CODE, transaction.getType().code());
+            batch.putLong(base + EPOCH_MICROS, toEpochMicros(transaction.getTimestamp()));
+            batch.putLong(base + AMOUNT_CENTS, Math.round(transaction.getAmount() * 100));
+            batch.putInt(base + DESCRIPTION_OFFSET, descriptionOffset);
+            batch.putInt(base + DESCRIPTION_LENGTH, descriptionLength);
+            batch.position(base + RECORD_SIZE);
+        }
+
+        try {
+            if (newAccounts.length() > 0) {
+                writeFully(accounts, ByteBuffer.wrap(newAccounts.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+            writeFully(descriptions, ByteBuffer.wrap(newDescriptions.toByteArray()));
+        } catch (IOException e) {
+            // Never let a later record point at description bytes that did not make it out
+            sharedDescriptions.clear();
+            throw e;
+        }
+        batch.flip();
+        writeFully(records, batch);
+    }
+
+    public void force() throws IOException {
+        accounts.force(false);
+        descriptions.force(false);
+        records.force(false);
+    }
+
+    public int size() throws IOException {
+        return (int) (records.size() / RECORD_SIZE);
+    }
+
+    // Visits every record straight from the mapped file; nothing is allocated per row
+    public void scan(RecordVisitor visitor) throws IOException {
+        scan(0, Integer.MAX_VALUE, visitor);
+    }
+
+    public void scan(int fromRow, int toRow, RecordVisitor visitor) throws IOException {
+        long fileSize = records.size();
+        int count = (int) Math.min(toRow, fileSize / RECORD_SIZE);
+        int row = fromRow;
+        while (row < count) {
+            int window = row / WINDOW_RECORDS;
+            ByteBuffer view = map(window, fileSize);
+            int windowEnd = (int) Math.min(count, (long) (window + 1) * WINDOW_RECORDS);
+            for (; row < windowEnd; row++) {
+                int base = (row % WINDOW_RECORDS) * RECORD_SIZE;
+                visitor.visit(row,
+                        view.getInt(base + ACCOUNT_ID),
+                        view.get(base + TYPE_CODE),
+                        view.getLong(base + EPOCH_MICROS),
+                        view.getLong(base + AMOUNT_CENTS));
+            }
+        }
+    }
+
+    // Materialize a single row only when a caller actually needs the object
+    public Transaction read(int row) throws IOException {
+        ByteBuffer view = map(row / WINDOW_RECORDS, records.size());
+        int base = (row % WINDOW_RECORDS) * RECORD_SIZE;
+
+        String accountNumber = accountNumber(view.getInt(base + ACCOUNT_ID));
+        LocalDateTime timestamp = fromEpochMicros(view.getLong(base + EPOCH_MICROS));
+        TransactionType type = TransactionType.fromCode(view.get(base + TYPE_CODE));
+        double amount = view.getLong(base + AMOUNT_CENTS) / 100.0;
+        int descriptionLength = view.getInt(base + DESCRIPTION_LENGTH);
+        if (descriptionLength == TRANSFER_DESCRIPTION) {
+            return Transaction.transfer(accountNumber, timestamp, type, amount,
+                    accountNumber(view.getInt(base + DESCRIPTION_OFFSET)));
+        }
+
+        ByteBuffer description = ByteBuffer.allocate(descriptionLength);
+        long position = view.getInt(base + DESCRIPTION_OFFSET);
+        while (description.hasRemaining()) {
+            int read = descriptions.read(description, position + description.position());
+            if (read < 0) {
+                throw new EOFException("Description heap is truncated");
+            }
+        }
+        return new Transaction(accountNumber, timestamp, type, amount,
+                new String(description.array(), StandardCharsets.UTF_8));
+    }
+
+    // Returns -1 for accounts that have no transactions in the store
+    public synchronized int accountId(String accountNumber) {
+        Integer accountId = accountIds.get(accountNumber);
+        return accountId != null ? accountId : -1;
+    }
+
+    public synchronized String accountNumber(int accountId) {
+        return accountNumbers.get(accountId);
+    }
+
+    // Timestamps are stored as UTC-based epoch micros of the local date-time
+    public static long toEpochMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    public static LocalDateTime fromEpochMicros(long epochMicros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                (int) Math.floorMod(epochMicros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        descriptions.close();
+        accounts.close();
+    }
+
+    private int accountIdFor(String accountNumber, StringBuilder newAccounts) {
+        Integer accountId = accountIds.get(accountNumber);
+        if (accountId == null) {
+            accountId = registerAccount(accountNumber);
+            newAccounts.append(accountNumber).append('\n');
+        }
+        return accountId;
+    }
+
+    private int registerAccount(String accountNumber) {
+        int accountId = accountNumbers.size();
+        accountNumbers.add(accountNumber);
+        accountIds.put(accountNumber, accountId);
+        return accountId;
+    }
+
+    // The window's mapping, covering as much of it as the file holds. A full window is
+    // mapped once and kept; only the last one, which appends still grow, is mapped again,
+    // and only once a reader needs records past its current end.
+    private synchronized MappedByteBuffer map(int window, long fileSize) throws IOException {
+        while (windows.size() <= window) {
+            windows.add(null);
+        }
+        long start = window * WINDOW_BYTES;
+        long length = Math.min(WINDOW_BYTES, fileSize - start);
+        MappedByteBuffer mapped = windows.get(window);
+        if (mapped == null || mapped.capacity() < length) {
+            mapped = records.map(FileChannel.MapMode.READ_ONLY, start, length);
+            windows.set(window, mapped);
+        }
+        return mapped;
+    }
+
+    private static FileChannel open(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+// Log-linear histogram of latencies in nanoseconds: every power of two is split into
+// 32 buckets, so a percentile is reported within about 3% of the true value, in a
+// fixed 15 KB whatever the range. Recording is allocation-free but not thread-safe:
+// one thread records, and others either read approximate figures or merge copies.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[(66 - SUB_BUCKET_BITS) * HALF];
+    private long count;
+    private long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[index(value)]++;
+        count++;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // The smallest recorded value at or above the given percentage of all values,
+    // rounded down to its bucket; 0 when nothing has been recorded
+    public long percentile(double percent) {
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percent)) / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(lowerBound(i), max);
+            }
+        }
+        return 0;
+    }
+
+    // e.g. "p50 12.3 us, p99 48.0 us, p99.9 210.5 us, max 1.2 ms"
+    public String summary() {
+        return "p50 " + format(percentile(50)) + ", p99 " + format(percentile(99))
+                + ", p99.9 " + format(percentile(99.9)) + ", max " + format(max);
+    }
+
+    private static String format(long nanos) {
+        if (nanos >= 1_000_000) {
+            return String.format("%.1f ms", nanos / 1e6);
+        }
+        return String.format("%.1f us", nanos / 1e3);
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above that, the shift drops all but
+    // the top SUB_BUCKET_BITS bits, leaving a mantissa in [HALF, SUB_BUCKETS)
+    private static int index(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        return (long) (index - shift * HALF) << shift;
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Startup load of transactions.txt: FileManager's chunked parallel loader against a
+// single-threaded BufferedReader loop over the same codec, so the difference is the
+// chunking alone. Generates the file in the working directory if it is missing, so use
+// an empty one; the pool size can be varied with
+// -Djava.util.concurrent.ForkJoinPool.common.parallelism=N.
+//   java LoaderBenchmark [lines] [rounds]
+public class LoaderBenchmark {
+    private static final String TRANSACTIONS_FILE = "transactions.txt";
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File file = new File(TRANSACTIONS_FILE);
+        if (!file.exists() || file.length() == 0) {
+            long begin = System.nanoTime();
+            generate(file, lines);
+            System.out.printf("Generated %,d lines (%,d MB) in %.1f s%n", lines, file.length() >> 20,
+                    (System.nanoTime() - begin) / 1e9);
+        }
+        System.out.printf("%s: %,d MB, fork-join parallelism %d%n", TRANSACTIONS_FILE, file.length() >> 20,
+                ForkJoinPool.getCommonPoolParallelism());
+
+        // The first round warms up the JIT; each list is dropped before the next load
+        for (int round = 0; round <= rounds; round++) {
+            String label = round == 0 ? "warm-up " : "round " + round + " ";
+            long begin = System.nanoTime();
+            int sequential = loadSequentially(file);
+            double sequentialSeconds = (System.nanoTime() - begin) / 1e9;
+
+            begin = System.nanoTime();
+            int parallel = new FileManager().loadTransactions().size();
+            double parallelSeconds = (System.nanoTime() - begin) / 1e9;
+
+            System.out.printf("%-9s sequential %6.2f s   parallel %6.2f s   speed-up %.2fx   rows %s%n", label,
+                    sequentialSeconds, parallelSeconds, sequentialSeconds / parallelSeconds,
+                    sequential == parallel ? String.format("%,d", parallel)
+                            : String.format("DIFFER: %,d vs %,d", sequential, parallel));
+        }
+    }
+
+    // The loader as it was before chunking: one reader, one line at a time
+    private static int loadSequentially(File file) {
+        RecordCodec codec = new RecordCodec();
+        List<Transaction> transactions = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Transaction transaction = codec.parseTransaction(line, 0, line.length());
+                if (transaction != null) {
+                    transactions.add(transaction);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return transactions.size();
+    }
+
+    // A mix of deposits, withdrawals and transfers over 100,000 accounts, one a second
+    private static void generate(File file, int lines) throws IOException {
+        RecordCodec codec = new RecordCodec();
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            for (int i = 0; i < lines; i++) {
+                String account = "ACC" + (100_000 + random.nextInt(100_000));
+                LocalDateTime timestamp = start.plusSeconds(i);
+                double amount = (1 + random.nextInt(100_000)) / 100.0;
+                int choice = random.nextInt(10);
+                Transaction transaction;
+                if (choice < 4) {
+                    transaction = new Transaction(account, timestamp, TransactionType.DEPOSIT, amount, "Cash deposit");
+                } else if (choice < 7) {
+                    transaction = new Transaction(account, timestamp, TransactionType.WITHDRAWAL, amount,
+                            "Cash withdrawal");
+                } else {
+                    String counterparty = "ACC" + (100_000 + random.nextInt(100_000));
+                    transaction = Transaction.transfer(account, timestamp, TransactionType.TRANSFER_OUT, amount,
+                            counterparty);
+                }
+                line.setLength(0);
+                codec.appendTransaction(line, transaction);
+                writer.append(line).append(System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A sealed, immutable piece of the transaction log (transactions-NNNNNN.txt) plus its
+// sidecar index (transactions-NNNNNN.idx): the accounts it contains and the time span
+// it covers, so readers can skip the whole segment without opening it.
+class LogSegment {
+    private static final String INDEX_HEADER = "SEGMENT";
+    private static final Pattern DATA_FILE = Pattern.compile("transactions-(\\d{6})\\.txt");
+
+    private final int sequence;
+    private final int transactionCount;
+    private final LocalDateTime minTimestamp;
+    private final LocalDateTime maxTimestamp;
+    private final Set<String> accountNumbers;
+
+    private LogSegment(int sequence, int transactionCount, LocalDateTime minTimestamp,
+                       LocalDateTime maxTimestamp, Set<String> accountNumbers) {
+        this.sequence = sequence;
+        this.transactionCount = transactionCount;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.accountNumbers = accountNumbers;
+    }
+
+    public static File dataFile(int sequence) {
+        return new File(String.format("transactions-%06d.txt", sequence));
+    }
+
+    public static File indexFile(int sequence) {
+        return new File(String.format("transactions-%06d.idx", sequence));
+    }
+
+    public static void delete(int sequence) {
+        dataFile(sequence).delete();
+        indexFile(sequence).delete();
+    }
+
+    // Sequence numbers of the sealed segments in the working directory, in log order
+    public static List<Integer> listSequences() {
+        List<Integer> sequences = new ArrayList<>();
+        String[] names = new File(".").list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = DATA_FILE.matcher(name);
+                if (matcher.matches()) {
+                    sequences.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+
+    // Reads the sidecar, rebuilding it if a crash left the segment without one
+    public static LogSegment load(int sequence, RecordCodec codec) throws IOException {
+        File index = indexFile(sequence);
+        if (index.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(index))) {
+                String[] header = reader.readLine().split("\\|");
+                if (header.length == 5 && header[0].equals(INDEX_HEADER)) {
+                    Set<String> accountNumbers = new HashSet<>();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        accountNumbers.add(line);
+                    }
+                    return new LogSegment(sequence, Integer.parseInt(header[2]),
+                            parseTimestamp(header[3]), parseTimestamp(header[4]), accountNumbers);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Rebuilding damaged segment index " + index.getName());
+            }
+        }
+        LogSegment segment = build(sequence, codec);
+        segment.writeIndex();
+        return segment;
+    }
+
+    // One pass over a freshly sealed segment to collect its sidecar contents
+    public static LogSegment build(int sequence, RecordCodec codec) throws IOException {
+        int count = 0;
+        LocalDateTime min = null;
+        LocalDateTime max = null;
+        Set<String> accountNumbers = new HashSet<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(dataFile(sequence)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Transaction transaction = codec.parseTransaction(line, 0, line.length());
+                if (transaction == null) {
+                    continue;
+                }
+                count++;
+                accountNumbers.add(transaction.getAccountNumber());
+                LocalDateTime timestamp = transaction.getTimestamp();
+                if (min == null || timestamp.isBefore(min)) {
+                    min = timestamp;
+                }
+                if (max == null || timestamp.isAfter(max)) {
+                    max = timestamp;
+                }
+            }
+        }
+        return new LogSegment(sequence, count, min, max, accountNumbers);
+    }
+
+    public void writeIndex() throws IOException {
+        File index = indexFile(sequence);
+        File temp = new File(index.getPath() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+            writer.println(INDEX_HEADER + "|" + sequence + "|" + transactionCount + "|"
+                    + formatTimestamp(minTimestamp) + "|" + formatTimestamp(maxTimestamp));
+            for (String accountNumber : accountNumbers) {
+                writer.println(accountNumber);
+            }
+        }
+        Files.move(temp.toPath(), index.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean mayContain(String accountNumber) {
+        return accountNumbers.contains(accountNumber);
+    }
+
+    // Inclusive on both ends, so it never skips a segment that could hold a match
+    public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return transactionCount > 0 && !maxTimestamp.isBefore(start) && !minTimestamp.isAfter(end);
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public LocalDateTime getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public LocalDateTime getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    private static String formatTimestamp(LocalDateTime timestamp) {
+        return timestamp == null ? "-" : timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        return value.equals("-") ? null : LocalDateTime.parse(value, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+}
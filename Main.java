@@ -1,513 +1,769 @@
-import java.util.Scanner;
-
-public class Main {
-    private static BankingSystem bankingSystem = new BankingSystem();
-    private static Scanner scanner = new Scanner(System.in);
-
-    public static void main(String[] args) {
-        System.out.println("=".repeat(50));
-        System.out.println("    WELCOME TO CAVITE STATE UNIVERSITY");
-        System.out.println("           BANKING SYSTEM");
-        System.out.println("=".repeat(50));
-
-        while (true) {
-            showMainMenu();
-            int choice = getIntInput("Choose an option: ");
-
-            switch (choice) {
-                case 1:
-                    adminInterface();
-                    break;
-                case 2:
-                    customerInterface();
-                    break;
-                case 3:
-                    System.out.println("\nThank you for using CvSU Banking System!");
-                    System.out.println("Goodbye!");
-                    System.exit(0);
-                    break;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private static void showMainMenu() {
-        System.out.println("\n" + "=".repeat(40));
-        System.out.println("           MAIN MENU");
-        System.out.println("=".repeat(40));
-        System.out.println("1. Admin Login");
-        System.out.println("2. Customer Interface");
-        System.out.println("3. Exit");
-        System.out.println("=".repeat(40));
-    }
-
-    private static void adminInterface() {
-        System.out.println("\n=== ADMIN LOGIN ===");
-        String password = getStringInputWithBack("Enter admin password (or type 'back' to return): ");
-        if (password == null) return; // User chose to go back
-
-        if (bankingSystem.adminLogin(password)) {
-            System.out.println("Admin login successful!");
-            adminMenu();
-        } else {
-            System.out.println("Invalid admin password!");
-        }
-    }
-
-    private static void adminMenu() {
-        while (true) {
-            System.out.println("\n" + "=".repeat(40));
-            System.out.println("          ADMIN MENU");
-            System.out.println("=".repeat(40));
-            System.out.println("1. View All Customers");
-            System.out.println("2. View All Transactions");
-            System.out.println("3. Create Customer Account");
-            System.out.println("4. Delete Customer Account");
-            System.out.println("5. Toggle Account Status");
-            System.out.println("6. View Customer Transaction History");
-            System.out.println("7. System Statistics");
-            System.out.println("8. Logout");
-            System.out.println("=".repeat(40));
-
-            int choice = getIntInput("Choose an option: ");
-
-            switch (choice) {
-                case 1:
-                    bankingSystem.viewAllCustomers();
-                    break;
-                case 2:
-                    bankingSystem.viewAllTransactions();
-                    break;
-                case 3:
-                    adminCreateAccount();
-                    break;
-                case 4:
-                    adminDeleteAccount();
-                    break;
-                case 5:
-                    adminToggleStatus();
-                    break;
-                case 6:
-                    adminViewTransactionHistory();
-                    break;
-                case 7:
-                    showSystemStatistics();
-                    break;
-                case 8:
-                    System.out.println("Admin logged out successfully!");
-                    return;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private static void adminCreateAccount() {
-        System.out.println("\n=== CREATE CUSTOMER ACCOUNT (ADMIN) ===");
-        System.out.println("(Type 'back' at any prompt to return to admin menu)");
-
-        String name = getStringInputWithBack("Enter customer name: ");
-        if (name == null) return;
-
-        String pin = null;
-        while (pin == null) {
-            String inputPin = getStringInputWithBack("Enter 4-digit PIN for customer: ");
-            if (inputPin == null) return;
-
-            if (inputPin.matches("\\d{4}")) {
-                pin = inputPin;
-            } else {
-                System.out.println("Invalid PIN! Please enter exactly 4 digits.");
-            }
-        }
-
-        String accountType = null;
-        while (accountType == null) {
-            String inputType = getStringInputWithBack("Enter account type (SAVINGS/CHECKING): ");
-            if (inputType == null) return;
-
-            inputType = inputType.toUpperCase();
-            if (inputType.equals("SAVINGS") || inputType.equals("CHECKING")) {
-                accountType = inputType;
-            } else {
-                System.out.println("Invalid account type! Please enter SAVINGS or CHECKING.");
-            }
-        }
-
-        Double initialDeposit = getDoubleInputWithBack("Enter initial deposit amount: $");
-        if (initialDeposit == null) return;
-
-        String accountNumber = bankingSystem.createCustomer(name, pin, accountType, initialDeposit);
-
-        if (accountNumber != null) {
-            System.out.println("\n" + "=".repeat(50));
-            System.out.println("ACCOUNT CREATED SUCCESSFULLY!");
-            System.out.println("Account Number: " + accountNumber);
-            System.out.println("Customer Name: " + name);
-            System.out.println("PIN: " + pin);
-            System.out.println("Account Type: " + accountType);
-            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
-            System.out.println("=".repeat(50));
-        }
-    }
-
-    private static void adminDeleteAccount() {
-        System.out.println("\n=== DELETE CUSTOMER ACCOUNT ===");
-        System.out.println("(Type 'back' to return to admin menu)");
-
-        String accountNumber = getStringInputWithBack("Enter account number to delete: ");
-        if (accountNumber == null) return;
-
-        String confirmation = getStringInputWithBack("Are you sure you want to delete this account? (yes/no): ");
-        if (confirmation == null) return;
-
-        if (confirmation.equalsIgnoreCase("yes")) {
-            if (bankingSystem.deleteCustomer(accountNumber)) {
-                System.out.println("Account deleted successfully!");
-            } else {
-                System.out.println("Account not found!");
-            }
-        } else {
-            System.out.println("Delete operation cancelled.");
-        }
-    }
-
-    private static void adminToggleStatus() {
-        System.out.println("\n=== TOGGLE ACCOUNT STATUS ===");
-        System.out.println("(Type 'back' to return to admin menu)");
-
-        String accountNumber = getStringInputWithBack("Enter account number: ");
-        if (accountNumber == null) return;
-
-        if (bankingSystem.toggleAccountStatus(accountNumber)) {
-            System.out.println("Account status toggled successfully!");
-        } else {
-            System.out.println("Account not found!");
-        }
-    }
-
-    private static void adminViewTransactionHistory() {
-        System.out.println("\n=== VIEW CUSTOMER TRANSACTION HISTORY ===");
-        System.out.println("(Type 'back' to return to admin menu)");
-
-        String accountNumber = getStringInputWithBack("Enter account number: ");
-        if (accountNumber == null) return;
-
-        bankingSystem.viewTransactionHistory(accountNumber);
-    }
-
-    private static void showSystemStatistics() {
-        System.out.println("\n=== SYSTEM STATISTICS ===");
-        // This would require additional methods in BankingSystem
-        System.out.println("System statistics feature coming soon!");
-        System.out.println("Current available features:");
-        System.out.println("- View all customers");
-        System.out.println("- View all transactions");
-        System.out.println("- Account management");
-    }
-
-    private static void customerInterface() {
-        while (true) {
-            System.out.println("\n" + "=".repeat(40));
-            System.out.println("        CUSTOMER INTERFACE");
-            System.out.println("=".repeat(40));
-            System.out.println("1. Create New Account");
-            System.out.println("2. Login to Existing Account");
-            System.out.println("3. Back to Main Menu");
-            System.out.println("=".repeat(40));
-
-            int choice = getIntInput("Choose an option: ");
-
-            switch (choice) {
-                case 1:
-                    customerCreateAccount();
-                    break;
-                case 2:
-                    customerLogin();
-                    break;
-                case 3:
-                    return;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private static void customerCreateAccount() {
-        System.out.println("\n=== CREATE NEW ACCOUNT ===");
-        System.out.println("(Type 'back' at any prompt to return to customer interface)");
-
-        String name = getStringInputWithBack("Enter your full name: ");
-        if (name == null) return;
-
-        String pin = null;
-        while (pin == null) {
-            String inputPin = getStringInputWithBack("Create a 4-digit PIN: ");
-            if (inputPin == null) return;
-
-            if (inputPin.matches("\\d{4}")) {
-                String confirmPin = getStringInputWithBack("Confirm your PIN: ");
-                if (confirmPin == null) return;
-
-                if (inputPin.equals(confirmPin)) {
-                    pin = inputPin;
-                } else {
-                    System.out.println("PINs do not match! Please try again.");
-                }
-            } else {
-                System.out.println("Invalid PIN! Please enter exactly 4 digits.");
-            }
-        }
-
-        String accountType = null;
-        while (accountType == null) {
-            System.out.println("\nAccount Types:");
-            System.out.println("1. SAVINGS - Standard savings account");
-            System.out.println("2. CHECKING - Current account for daily transactions");
-            System.out.println("(Type 'back' to return to customer interface)");
-
-            String typeInput = getStringInputWithBack("Choose account type (1-2): ");
-            if (typeInput == null) return;
-
-            try {
-                int typeChoice = Integer.parseInt(typeInput);
-                if (typeChoice == 1) {
-                    accountType = "SAVINGS";
-                } else if (typeChoice == 2) {
-                    accountType = "CHECKING";
-                } else {
-                    System.out.println("Invalid choice! Please select 1 or 2.");
-                }
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter 1 or 2.");
-            }
-        }
-
-        Double initialDeposit = null;
-        while (initialDeposit == null) {
-            Double inputDeposit = getDoubleInputWithBack("Enter initial deposit amount (minimum $50): $");
-            if (inputDeposit == null) return;
-
-            if (inputDeposit >= 50) {
-                initialDeposit = inputDeposit;
-            } else {
-                System.out.println("Minimum initial deposit is $50.00");
-            }
-        }
-
-        String accountNumber = bankingSystem.createCustomer(name, pin, accountType, initialDeposit);
-
-        if (accountNumber != null) {
-            System.out.println("\n" + "=".repeat(60));
-            System.out.println("🎉 CONGRATULATIONS! ACCOUNT CREATED SUCCESSFULLY! 🎉");
-            System.out.println("=".repeat(60));
-            System.out.println("IMPORTANT: Please save these details securely:");
-            System.out.println("Account Number: " + accountNumber);
-            System.out.println("Account Holder: " + name);
-            System.out.println("Account Type: " + accountType);
-            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
-            System.out.println("\n⚠️  SECURITY REMINDER:");
-            System.out.println("- Never share your PIN with anyone");
-            System.out.println("- Keep your account number confidential");
-            System.out.println("- Contact admin if you suspect unauthorized access");
-            System.out.println("=".repeat(60));
-        }
-    }
-
-    private static void customerLogin() {
-        System.out.println("\n=== CUSTOMER LOGIN ===");
-        System.out.println("(Type 'back' at any prompt to return to customer interface)");
-
-        String accountNumber = getStringInputWithBack("Enter your account number: ");
-        if (accountNumber == null) return;
-
-        String pin = getStringInputWithBack("Enter your PIN: ");
-        if (pin == null) return;
-
-        Customer customer = bankingSystem.customerLogin(accountNumber, pin);
-
-        if (customer != null) {
-            customerMenu(accountNumber, pin, customer);
-        }
-    }
-
-    private static void customerMenu(String accountNumber, String pin, Customer customer) {
-        while (true) {
-            System.out.println("\n" + "=".repeat(50));
-            System.out.println("Welcome, " + customer.getName() + "!");
-            System.out.println("Account: " + accountNumber);
-            System.out.println("=".repeat(50));
-            System.out.println("1. Check Balance");
-            System.out.println("2. Deposit Money");
-            System.out.println("3. Withdraw Money");
-            System.out.println("4. Transfer Money");
-            System.out.println("5. View Recent Transactions (Last 5)");
-            System.out.println("6. View All Transaction History");
-            System.out.println("7. Account Information");
-            System.out.println("8. Logout");
-            System.out.println("=".repeat(50));
-
-            int choice = getIntInput("Choose an option: ");
-
-            switch (choice) {
-                case 1:
-                    bankingSystem.checkBalance(accountNumber, pin);
-                    break;
-                case 2:
-                    customerDeposit(accountNumber, pin);
-                    break;
-                case 3:
-                    customerWithdraw(accountNumber, pin);
-                    break;
-                case 4:
-                    customerTransfer(accountNumber, pin);
-                    break;
-                case 5:
-                    bankingSystem.viewRecentTransactions(accountNumber, pin, 5);
-                    break;
-                case 6:
-                    bankingSystem.viewTransactionHistory(accountNumber);
-                    break;
-                case 7:
-                    showAccountInfo(customer);
-                    break;
-                case 8:
-                    System.out.println("Thank you for using CvSU Banking System!");
-                    System.out.println("Logged out successfully. Stay safe!");
-                    return;
-                default:
-                    System.out.println("Invalid option! Please try again.");
-            }
-        }
-    }
-
-    private static void customerDeposit(String accountNumber, String pin) {
-        System.out.println("\n=== DEPOSIT MONEY ===");
-        System.out.println("(Type 'back' to return to customer menu)");
-
-        Double amount = getDoubleInputWithBack("Enter deposit amount: $");
-        if (amount == null) return;
-
-        if (amount <= 0) {
-            System.out.println("Invalid amount! Deposit amount must be positive.");
-            return;
-        }
-
-        bankingSystem.deposit(accountNumber, pin, amount);
-    }
-
-    private static void customerWithdraw(String accountNumber, String pin) {
-        System.out.println("\n=== WITHDRAW MONEY ===");
-        System.out.println("(Type 'back' to return to customer menu)");
-
-        // First show current balance
-        System.out.println("Checking your current balance...");
-        bankingSystem.checkBalance(accountNumber, pin);
-
-        Double amount = getDoubleInputWithBack("\nEnter withdrawal amount: $");
-        if (amount == null) return;
-
-        if (amount <= 0) {
-            System.out.println("Invalid amount! Withdrawal amount must be positive.");
-            return;
-        }
-
-        bankingSystem.withdraw(accountNumber, pin, amount);
-    }
-
-    private static void customerTransfer(String accountNumber, String pin) {
-        System.out.println("\n=== TRANSFER MONEY ===");
-        System.out.println("(Type 'back' at any prompt to return to customer menu)");
-
-        // Show current balance first
-        System.out.println("Your current balance:");
-        bankingSystem.checkBalance(accountNumber, pin);
-
-        String toAccount = getStringInputWithBack("\nEnter destination account number: ");
-        if (toAccount == null) return;
-
-        if (toAccount.equals(accountNumber)) {
-            System.out.println("Cannot transfer to the same account!");
-            return;
-        }
-
-        Double amount = getDoubleInputWithBack("Enter transfer amount: $");
-        if (amount == null) return;
-
-        if (amount <= 0) {
-            System.out.println("Invalid amount! Transfer amount must be positive.");
-            return;
-        }
-
-        String confirmation = getStringInputWithBack("Confirm transfer of $" + String.format("%.2f", amount) +
-                " to account " + toAccount + "? (yes/no): ");
-        if (confirmation == null) return;
-
-        if (confirmation.equalsIgnoreCase("yes")) {
-            bankingSystem.transfer(accountNumber, pin, toAccount, amount);
-        } else {
-            System.out.println("Transfer cancelled.");
-        }
-    }
-
-    private static void showAccountInfo(Customer customer) {
-        System.out.println("\n=== ACCOUNT INFORMATION ===");
-        Account account = customer.getAccount();
-        System.out.println("Account Number: " + account.getAccountNumber());
-        System.out.println("Account Holder: " + customer.getName());
-        System.out.println("Account Type: " + account.getAccountType());
-        System.out.println("Current Balance: $" + String.format("%.2f", account.getBalance()));
-        System.out.println("Account Status: " + (account.isActive() ? "Active" : "Suspended"));
-        System.out.println("=".repeat(40));
-    }
-
-    // New utility methods for input handling with back option
-    private static String getStringInputWithBack(String prompt) {
-        System.out.print(prompt);
-        String input = scanner.nextLine().trim();
-        if (input.equalsIgnoreCase("back")) {
-            System.out.println("Returning to previous menu...");
-            return null;
-        }
-        return input;
-    }
-
-    private static Double getDoubleInputWithBack(String prompt) {
-        while (true) {
-            String input = getStringInputWithBack(prompt);
-            if (input == null) return null; // User chose to go back
-
-            try {
-                return Double.parseDouble(input);
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a valid amount or 'back' to return.");
-            }
-        }
-    }
-
-    // Original utility methods for input handling (still used in menus)
-    private static int getIntInput(String prompt) {
-        while (true) {
-            try {
-                System.out.print(prompt);
-                int value = Integer.parseInt(scanner.nextLine());
-                return value;
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a valid number.");
-            }
-        }
-    }
-
-    private static double getDoubleInput(String prompt) {
-        while (true) {
-            try {
-                System.out.print(prompt);
-                double value = Double.parseDouble(scanner.nextLine());
-                return value;
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a valid amount.");
-            }
-        }
-    }
-}
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.UnaryOperator;
+
+public class Main {
+    private static BankingSystem bankingSystem = new BankingSystem();
+    private static Scanner scanner = new Scanner(System.in);
+    private static final int RECENT_DAYS = 7; // Days of activity shown in System Statistics
+
+    // "java Main --server [port]" serves the bank to remote sessions instead of this console
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args.length > 1 ? Integer.parseInt(args[1]) : BankingServer.DEFAULT_PORT);
+            return;
+        }
+        System.out.println("=".repeat(50));
+        System.out.println("    WELCOME TO CAVITE STATE UNIVERSITY");
+        System.out.println("           BANKING SYSTEM");
+        System.out.println("=".repeat(50));
+
+        while (true) {
+            showMainMenu();
+            int choice = getIntInput("Choose an option: ");
+
+            switch (choice) {
+                case 1:
+                    adminInterface();
+                    break;
+                case 2:
+                    customerInterface();
+                    break;
+                case 3:
+                    System.out.println("\nThank you for using CvSU Banking System!");
+                    System.out.println("Goodbye!");
+                    bankingSystem.shutdown();
+                    System.exit(0);
+                    break;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private static void showMainMenu() {
+        System.out.println("\n" + "=".repeat(40));
+        System.out.println("           MAIN MENU");
+        System.out.println("=".repeat(40));
+        System.out.println("1. Admin Login");
+        System.out.println("2. Customer Interface");
+        System.out.println("3. Exit");
+        System.out.println("=".repeat(40));
+    }
+
+    private static void adminInterface() {
+        System.out.println("\n=== ADMIN LOGIN ===");
+        String password = getStringInputWithBack("Enter admin password (or type 'back' to return): ");
+        if (password == null) return; // User chose to go back
+
+        if (bankingSystem.adminLogin(password)) {
+            System.out.println("Admin login successful!");
+            adminMenu();
+        } else {
+            System.out.println("Invalid admin password!");
+        }
+    }
+
+    private static void adminMenu() {
+        while (true) {
+            System.out.println("\n" + "=".repeat(40));
+            System.out.println("          ADMIN MENU");
+            System.out.println("=".repeat(40));
+            System.out.println("1. View All Customers");
+            System.out.println("2. View All Transactions");
+            System.out.println("3. Create Customer Account");
+            System.out.println("4. Delete Customer Account");
+            System.out.println("5. Toggle Account Status");
+            System.out.println("6. View Customer Transaction History");
+            System.out.println("7. System Statistics");
+            System.out.println("8. Backup Data");
+            System.out.println("9. Restore Backup");
+            System.out.println("10. End-of-Day Report");
+            System.out.println("11. Search Transactions");
+            System.out.println("12. Process Batch File");
+            System.out.println("13. Logout");
+            System.out.println("=".repeat(40));
+
+            int choice = getIntInput("Choose an option: ");
+
+            switch (choice) {
+                case 1:
+                    browse(bankingSystem::viewAllCustomers);
+                    break;
+                case 2:
+                    browse(bankingSystem::viewAllTransactions);
+                    break;
+                case 3:
+                    adminCreateAccount();
+                    break;
+                case 4:
+                    adminDeleteAccount();
+                    break;
+                case 5:
+                    adminToggleStatus();
+                    break;
+                case 6:
+                    adminViewTransactionHistory();
+                    break;
+                case 7:
+                    showSystemStatistics();
+                    break;
+                case 8:
+                    adminBackupData();
+                    break;
+                case 9:
+                    adminRestoreBackup();
+                    break;
+                case 10:
+                    adminEndOfDayReport();
+                    break;
+                case 11:
+                    adminSearchTransactions();
+                    break;
+                case 12:
+                    adminProcessBatch();
+                    break;
+                case 13:
+                    System.out.println("Admin logged out successfully!");
+                    return;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private static void adminCreateAccount() {
+        System.out.println("\n=== CREATE CUSTOMER ACCOUNT (ADMIN) ===");
+        System.out.println("(Type 'back' at any prompt to return to admin menu)");
+
+        String name = getStringInputWithBack("Enter customer name: ");
+        if (name == null) return;
+
+        String pin = null;
+        while (pin == null) {
+            String inputPin = getStringInputWithBack("Enter 4-digit PIN for customer: ");
+            if (inputPin == null) return;
+
+            if (inputPin.matches("\\d{4}")) {
+                pin = inputPin;
+            } else {
+                System.out.println("Invalid PIN! Please enter exactly 4 digits.");
+            }
+        }
+
+        String accountType = null;
+        while (accountType == null) {
+            String inputType = getStringInputWithBack("Enter account type (SAVINGS/CHECKING): ");
+            if (inputType == null) return;
+
+            inputType = inputType.toUpperCase();
+            if (inputType.equals("SAVINGS") || inputType.equals("CHECKING")) {
+                accountType = inputType;
+            } else {
+                System.out.println("Invalid account type! Please enter SAVINGS or CHECKING.");
+            }
+        }
+
+        Double initialDeposit = getDoubleInputWithBack("Enter initial deposit amount: $");
+        if (initialDeposit == null) return;
+
+        String accountNumber = bankingSystem.createCustomer(name, pin, accountType, initialDeposit);
+
+        if (accountNumber != null) {
+            System.out.println("\n" + "=".repeat(50));
+            System.out.println("ACCOUNT CREATED SUCCESSFULLY!");
+            System.out.println("Account Number: " + accountNumber);
+            System.out.println("Customer Name: " + name);
+            System.out.println("PIN: " + pin);
+            System.out.println("Account Type: " + accountType);
+            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
+            System.out.println("=".repeat(50));
+        }
+    }
+
+    private static void adminDeleteAccount() {
+        System.out.println("\n=== DELETE CUSTOMER ACCOUNT ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+
+        String accountNumber = getStringInputWithBack("Enter account number to delete: ");
+        if (accountNumber == null) return;
+
+        String confirmation = getStringInputWithBack("Are you sure you want to delete this account? (yes/no): ");
+        if (confirmation == null) return;
+
+        if (confirmation.equalsIgnoreCase("yes")) {
+            if (bankingSystem.deleteCustomer(accountNumber)) {
+                System.out.println("Account deleted successfully!");
+            } else {
+                System.out.println("Account not found!");
+            }
+        } else {
+            System.out.println("Delete operation cancelled.");
+        }
+    }
+
+    private static void adminToggleStatus() {
+        System.out.println("\n=== TOGGLE ACCOUNT STATUS ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+
+        String accountNumber = getStringInputWithBack("Enter account number: ");
+        if (accountNumber == null) return;
+
+        if (bankingSystem.toggleAccountStatus(accountNumber)) {
+            System.out.println("Account status toggled successfully!");
+        } else {
+            System.out.println("Account not found!");
+        }
+    }
+
+    private static void adminViewTransactionHistory() {
+        System.out.println("\n=== VIEW CUSTOMER TRANSACTION HISTORY ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+
+        String accountNumber = getStringInputWithBack("Enter account number: ");
+        if (accountNumber == null) return;
+
+        browse(cursor -> bankingSystem.viewTransactionHistory(accountNumber, cursor));
+    }
+
+    private static void adminBackupData() {
+        System.out.println("\n=== BACKUP DATA ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+
+        String full = getStringInputWithBack("Full backup instead of incremental? (yes/no): ");
+        if (full == null) return;
+
+        bankingSystem.backupData(full.equalsIgnoreCase("yes"));
+    }
+
+    private static void adminRestoreBackup() {
+        System.out.println("\n=== RESTORE BACKUP ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+        bankingSystem.viewBackups();
+
+        String backupId = getStringInputWithBack("Enter backup to restore: ");
+        if (backupId == null) return;
+
+        String confirmation = getStringInputWithBack("This replaces all current data. Continue? (yes/no): ");
+        if (confirmation == null) return;
+
+        if (confirmation.equalsIgnoreCase("yes")) {
+            if (bankingSystem.restoreBackup(backupId)) {
+                System.out.println("Backup restored successfully!");
+            } else {
+                System.out.println("Backup could not be restored!");
+            }
+        } else {
+            System.out.println("Restore operation cancelled.");
+        }
+    }
+
+    private static void adminEndOfDayReport() {
+        System.out.println("\n=== END-OF-DAY REPORT ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+
+        while (true) {
+            String input = getStringInputWithBack("Enter date (yyyy-MM-dd, blank for today): ");
+            if (input == null) return;
+
+            try {
+                bankingSystem.viewEndOfDayReport(input.isEmpty() ? LocalDate.now() : LocalDate.parse(input));
+                return;
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date! Please use the format yyyy-MM-dd.");
+            }
+        }
+    }
+
+    // Every criterion may be left blank to match anything
+    private static void adminSearchTransactions() {
+        System.out.println("\n=== SEARCH TRANSACTIONS ===");
+        System.out.println("(Leave a criterion blank to skip it, type 'back' to return to admin menu)");
+        TransactionQuery query = new TransactionQuery();
+
+        String account = getStringInputWithBack("Account number: ");
+        if (account == null) return;
+        if (!account.isEmpty()) query.account(account);
+
+        while (true) {
+            String types = getStringInputWithBack("Types (comma-separated, e.g. DEPOSIT,TRANSFER_OUT): ");
+            if (types == null) return;
+            if (types.isEmpty()) break;
+            try {
+                List<TransactionType> parsed = new ArrayList<>();
+                for (String type : types.split(",")) {
+                    parsed.add(TransactionType.valueOf(type.trim().toUpperCase()));
+                }
+                query.types(EnumSet.copyOf(parsed));
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown type! Choose from DEPOSIT, WITHDRAWAL, TRANSFER_IN and TRANSFER_OUT.");
+            }
+        }
+
+        LocalDate from = getDateInputWithBack("From date (yyyy-MM-dd): ");
+        if (from == LocalDate.MIN) return;
+        if (from != null) query.from(from.atStartOfDay());
+
+        LocalDate to = getDateInputWithBack("To date, inclusive (yyyy-MM-dd): ");
+        if (to == LocalDate.MIN) return;
+        if (to != null) query.to(to.plusDays(1).atStartOfDay());
+
+        Double min = getOptionalDoubleInputWithBack("Minimum amount: $");
+        if (min != null && min.isNaN()) return;
+        if (min != null) query.amountAtLeast(min);
+
+        Double max = getOptionalDoubleInputWithBack("Maximum amount: $");
+        if (max != null && max.isNaN()) return;
+        if (max != null) query.amountAtMost(max);
+
+        String counterparty = getStringInputWithBack("Transfer counterparty account: ");
+        if (counterparty == null) return;
+        if (!counterparty.isEmpty()) query.counterparty(counterparty);
+
+        bankingSystem.searchTransactions(query);
+    }
+
+    private static void adminProcessBatch() {
+        System.out.println("\n=== PROCESS BATCH FILE ===");
+        System.out.println("(Type 'back' to return to admin menu)");
+        System.out.println("One operation per line: DEPOSIT <account> <amount> [description],");
+        System.out.println("WITHDRAW <account> <amount> or TRANSFER <from> <to> <amount>");
+
+        String path = getStringInputWithBack("Batch file path: ");
+        if (path == null) return;
+
+        bankingSystem.processBatchFile(path);
+    }
+
+    private static void showSystemStatistics() {
+        System.out.println("\n=== SYSTEM STATISTICS ===");
+        long start = System.nanoTime();
+        SystemStatistics statistics = bankingSystem.getSystemStatistics();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Customers: " + statistics.getCustomerCount()
+                + " (Active: " + statistics.getActiveCount() + ", Suspended: " + statistics.getSuspendedCount() + ")");
+        System.out.println("Total Deposits Under Management: $" + String.format("%.2f", statistics.getTotalBalance()));
+
+        System.out.println("\nBalances by Account Type:");
+        statistics.getBalanceByAccountType().forEach((type, balances) ->
+                System.out.printf("  %-15s %8d accounts   $%.2f%n", type, balances.getCount(), balances.getSum()));
+
+        TransactionStatistics transactions = statistics.getTransactions();
+        System.out.println("\nTransaction Volume by Type (" + transactions.getTransactionCount() + " transactions):");
+        for (TransactionType type : TransactionType.values()) {
+            System.out.printf("  %-15s %8d   $%.2f%n", type, transactions.getCount(type), transactions.getAmount(type));
+        }
+
+        System.out.println("\nTransaction Volume by Day (latest " + RECENT_DAYS + " days with activity):");
+        transactions.getVolumeByDay().descendingMap().entrySet().stream()
+                .limit(RECENT_DAYS)
+                .forEach(day -> System.out.printf("  %-15s %8d   $%.2f%n",
+                        day.getKey(), day.getValue().getCount(), day.getValue().getAmount()));
+
+        System.out.println("\nTop Accounts by Activity:");
+        transactions.getTopAccounts().forEach((accountNumber, volume) ->
+                System.out.printf("  %-18s %8d   $%.2f%n", accountNumber, volume.getCount(), volume.getAmount()));
+
+        System.out.println("\nComputed in " + millis + " ms");
+    }
+
+    // Runs until the process is stopped; the shutdown hook saves the data on the way out
+    private static void runServer(int port) {
+        try {
+            BankingServer server = new BankingServer(bankingSystem, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    System.err.println("Error stopping server: " + e.getMessage());
+                }
+                bankingSystem.shutdown();
+            }, "banking-server-shutdown"));
+            server.start();
+            System.out.println("CvSU Banking System server listening on localhost:" + server.getPort());
+            server.awaitTermination();
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void customerInterface() {
+        while (true) {
+            System.out.println("\n" + "=".repeat(40));
+            System.out.println("        CUSTOMER INTERFACE");
+            System.out.println("=".repeat(40));
+            System.out.println("1. Create New Account");
+            System.out.println("2. Login to Existing Account");
+            System.out.println("3. Back to Main Menu");
+            System.out.println("=".repeat(40));
+
+            int choice = getIntInput("Choose an option: ");
+
+            switch (choice) {
+                case 1:
+                    customerCreateAccount();
+                    break;
+                case 2:
+                    customerLogin();
+                    break;
+                case 3:
+                    return;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private static void customerCreateAccount() {
+        System.out.println("\n=== CREATE NEW ACCOUNT ===");
+        System.out.println("(Type 'back' at any prompt to return to customer interface)");
+
+        String name = getStringInputWithBack("Enter your full name: ");
+        if (name == null) return;
+
+        String pin = null;
+        while (pin == null) {
+            String inputPin = getStringInputWithBack("Create a 4-digit PIN: ");
+            if (inputPin == null) return;
+
+            if (inputPin.matches("\\d{4}")) {
+                String confirmPin = getStringInputWithBack("Confirm your PIN: ");
+                if (confirmPin == null) return;
+
+                if (inputPin.equals(confirmPin)) {
+                    pin = inputPin;
+                } else {
+                    System.out.println("PINs do not match! Please try again.");
+                }
+            } else {
+                System.out.println("Invalid PIN! Please enter exactly 4 digits.");
+            }
+        }
+
+        String accountType = null;
+        while (accountType == null) {
+            System.out.println("\nAccount Types:");
+            System.out.println("1. SAVINGS - Standard savings account");
+            System.out.println("2. CHECKING - Current account for daily transactions");
+            System.out.println("(Type 'back' to return to customer interface)");
+
+            String typeInput = getStringInputWithBack("Choose account type (1-2): ");
+            if (typeInput == null) return;
+
+            try {
+                int typeChoice = Integer.parseInt(typeInput);
+                if (typeChoice == 1) {
+                    accountType = "SAVINGS";
+                } else if (typeChoice == 2) {
+                    accountType = "CHECKING";
+                } else {
+                    System.out.println("Invalid choice! Please select 1 or 2.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter 1 or 2.");
+            }
+        }
+
+        Double initialDeposit = null;
+        while (initialDeposit == null) {
+            Double inputDeposit = getDoubleInputWithBack("Enter initial deposit amount (minimum $50): $");
+            if (inputDeposit == null) return;
+
+            if (inputDeposit >= 50) {
+                initialDeposit = inputDeposit;
+            } else {
+                System.out.println("Minimum initial deposit is $50.00");
+            }
+        }
+
+        String accountNumber = bankingSystem.createCustomer(name, pin, accountType, initialDeposit);
+
+        if (accountNumber != null) {
+            System.out.println("\n" + "=".repeat(60));
+            System.out.println("🎉 CONGRATULATIONS! ACCOUNT CREATED SUCCESSFULLY! 🎉");
+            System.out.println("=".repeat(60));
+            System.out.println("IMPORTANT: Please save these details securely:");
+            System.out.println("Account Number: " + accountNumber);
+            System.out.println("Account Holder: " + name);
+            System.out.println("Account Type: " + accountType);
+            System.out.println("Initial Balance: $" + String.format("%.2f", initialDeposit));
+            System.out.println("\n⚠️  SECURITY REMINDER:");
+            System.out.println("- Never share your PIN with anyone");
+            System.out.println("- Keep your account number confidential");
+            System.out.println("- Contact admin if you suspect unauthorized access");
+            System.out.println("=".repeat(60));
+        }
+    }
+
+    private static void customerLogin() {
+        System.out.println("\n=== CUSTOMER LOGIN ===");
+        System.out.println("(Type 'back' at any prompt to return to customer interface)");
+
+        String accountNumber = getStringInputWithBack("Enter your account number: ");
+        if (accountNumber == null) return;
+
+        String pin = getStringInputWithBack("Enter your PIN: ");
+        if (pin == null) return;
+
+        Customer customer = bankingSystem.customerLogin(accountNumber, pin);
+
+        if (customer != null) {
+            customerMenu(accountNumber, pin, customer);
+        }
+    }
+
+    private static void customerMenu(String accountNumber, String pin, Customer customer) {
+        while (true) {
+            System.out.println("\n" + "=".repeat(50));
+            System.out.println("Welcome, " + customer.getName() + "!");
+            System.out.println("Account: " + accountNumber);
+            System.out.println("=".repeat(50));
+            System.out.println("1. Check Balance");
+            System.out.println("2. Deposit Money");
+            System.out.println("3. Withdraw Money");
+            System.out.println("4. Transfer Money");
+            System.out.println("5. View Recent Transactions (Last 5)");
+            System.out.println("6. View All Transaction History");
+            System.out.println("7. Account Information");
+            System.out.println("8. Logout");
+            System.out.println("=".repeat(50));
+
+            int choice = getIntInput("Choose an option: ");
+
+            switch (choice) {
+                case 1:
+                    bankingSystem.checkBalance(accountNumber, pin);
+                    break;
+                case 2:
+                    customerDeposit(accountNumber, pin);
+                    break;
+                case 3:
+                    customerWithdraw(accountNumber, pin);
+                    break;
+                case 4:
+                    customerTransfer(accountNumber, pin);
+                    break;
+                case 5:
+                    bankingSystem.viewRecentTransactions(accountNumber, pin, 5);
+                    break;
+                case 6:
+                    browse(cursor -> bankingSystem.viewTransactionHistory(accountNumber, cursor));
+                    break;
+                case 7:
+                    showAccountInfo(customer);
+                    break;
+                case 8:
+                    System.out.println("Thank you for using CvSU Banking System!");
+                    System.out.println("Logged out successfully. Stay safe!");
+                    return;
+                default:
+                    System.out.println("Invalid option! Please try again.");
+            }
+        }
+    }
+
+    private static void customerDeposit(String accountNumber, String pin) {
+        System.out.println("\n=== DEPOSIT MONEY ===");
+        System.out.println("(Type 'back' to return to customer menu)");
+
+        Double amount = getDoubleInputWithBack("Enter deposit amount: $");
+        if (amount == null) return;
+
+        if (amount <= 0) {
+            System.out.println("Invalid amount! Deposit amount must be positive.");
+            return;
+        }
+
+        bankingSystem.deposit(accountNumber, pin, amount);
+    }
+
+    private static void customerWithdraw(String accountNumber, String pin) {
+        System.out.println("\n=== WITHDRAW MONEY ===");
+        System.out.println("(Type 'back' to return to customer menu)");
+
+        // First show current balance
+        System.out.println("Checking your current balance...");
+        bankingSystem.checkBalance(accountNumber, pin);
+
+        Double amount = getDoubleInputWithBack("\nEnter withdrawal amount: $");
+        if (amount == null) return;
+
+        if (amount <= 0) {
+            System.out.println("Invalid amount! Withdrawal amount must be positive.");
+            return;
+        }
+
+        bankingSystem.withdraw(accountNumber, pin, amount);
+    }
+
+    private static void customerTransfer(String accountNumber, String pin) {
+        System.out.println("\n=== TRANSFER MONEY ===");
+        System.out.println("(Type 'back' at any prompt to return to customer menu)");
+
+        // Show current balance first
+        System.out.println("Your current balance:");
+        bankingSystem.checkBalance(accountNumber, pin);
+
+        String toAccount = getStringInputWithBack("\nEnter destination account number: ");
+        if (toAccount == null) return;
+
+        if (toAccount.equals(accountNumber)) {
+            System.out.println("Cannot transfer to the same account!");
+            return;
+        }
+
+        Double amount = getDoubleInputWithBack("Enter transfer amount: $");
+        if (amount == null) return;
+
+        if (amount <= 0) {
+            System.out.println("Invalid amount! Transfer amount must be positive.");
+            return;
+        }
+
+        String confirmation = getStringInputWithBack("Confirm transfer of $" + String.format("%.2f", amount) +
+                " to account " + toAccount + "? (yes/no): ");
+        if (confirmation == null) return;
+
+        if (confirmation.equalsIgnoreCase("yes")) {
+            bankingSystem.transfer(accountNumber, pin, toAccount, amount);
+        } else {
+            System.out.println("Transfer cancelled.");
+        }
+    }
+
+    private static void showAccountInfo(Customer customer) {
+        System.out.println("\n=== ACCOUNT INFORMATION ===");
+        Account account = customer.getAccount();
+        System.out.println("Account Number: " + account.getAccountNumber());
+        System.out.println("Account Holder: " + customer.getName());
+        System.out.println("Account Type: " + account.getAccountType());
+        System.out.println("Current Balance: $" + String.format("%.2f", account.getBalance()));
+        System.out.println("Account Status: " + (account.isActive() ? "Active" : "Suspended"));
+
+        AccountAggregates activity = bankingSystem.getAccountActivity(account.getAccountNumber());
+        System.out.println("Total Deposits: $" + String.format("%.2f", activity.getTotalDeposits()));
+        System.out.println("Total Withdrawals: $" + String.format("%.2f", activity.getTotalWithdrawals()));
+        System.out.println("Transactions: " + activity.getTransactionCount());
+        if (activity.getLastActivity() != null) {
+            System.out.println("Last Activity: "
+                    + activity.getLastActivity().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+        }
+        System.out.println("=".repeat(40));
+    }
+
+    // Pages through a listing: showPage prints the page at a cursor (null for the first)
+    // and returns the next page's cursor, or null on the last page
+    private static void browse(UnaryOperator<String> showPage) {
+        List<String> previous = new ArrayList<>(); // Cursors of the pages before this one
+        String cursor = null;
+        String next = showPage.apply(cursor);
+
+        while (next != null || !previous.isEmpty()) {
+            System.out.println("-- Page " + (previous.size() + 1) + " --");
+            String input = getStringInputWithBack(
+                    (next != null ? "[n] Next page  " : "") + (!previous.isEmpty() ? "[p] Previous page  " : "")
+                            + "(or type 'back' to return): ");
+            if (input == null) return;
+
+            if (input.equalsIgnoreCase("n") && next != null) {
+                previous.add(cursor);
+                cursor = next;
+            } else if (input.equalsIgnoreCase("p") && !previous.isEmpty()) {
+                cursor = previous.remove(previous.size() - 1);
+            } else {
+                System.out.println("Invalid option! Please try again.");
+                continue;
+            }
+            next = showPage.apply(cursor);
+        }
+    }
+
+    // New utility methods for input handling with back option
+    private static String getStringInputWithBack(String prompt) {
+        System.out.print(prompt);
+        String input = scanner.nextLine().trim();
+        if (input.equalsIgnoreCase("back")) {
+            System.out.println("Returning to previous menu...");
+            return null;
+        }
+        return input;
+    }
+
+    private static Double getDoubleInputWithBack(String prompt) {
+        while (true) {
+            String input = getStringInputWithBack(prompt);
+            if (input == null) return null; // User chose to go back
+
+            try {
+                return Double.parseDouble(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid amount or 'back' to return.");
+            }
+        }
+    }
+
+    // Null for a blank answer, LocalDate.MIN if the user typed 'back'
+    private static LocalDate getDateInputWithBack(String prompt) {
+        while (true) {
+            String input = getStringInputWithBack(prompt);
+            if (input == null) return LocalDate.MIN;
+            if (input.isEmpty()) return null;
+
+            try {
+                return LocalDate.parse(input);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date! Please use the format yyyy-MM-dd.");
+            }
+        }
+    }
+
+    // Null for a blank answer, NaN if the user typed 'back'
+    private static Double getOptionalDoubleInputWithBack(String prompt) {
+        while (true) {
+            String input = getStringInputWithBack(prompt);
+            if (input == null) return Double.NaN;
+            if (input.isEmpty()) return null;
+
+            try {
+                return Double.parseDouble(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid amount or 'back' to return.");
+            }
+        }
+    }
+
+    // Original utility methods for input handling (still used in menus)
+    private static int getIntInput(String prompt) {
+        while (true) {
+            try {
+                System.out.print(prompt);
+                int value = Integer.parseInt(scanner.nextLine());
+                return value;
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid number.");
+            }
+        }
+    }
+
+    private static double getDoubleInput(String prompt) {
+        while (true) {
+            try {
+                System.out.print(prompt);
+                double value = Double.parseDouble(scanner.nextLine());
+                return value;
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input! Please enter a valid amount.");
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Single-writer pipeline for BankingSystem's mutations, used in sequencer mode
+// (-Dbanking.sequencer=true). Callers publish each mutation into a pre-allocated ring
+// of slots and get a future for its result. Three threads then work through the ring
+// in sequence order, each one staying behind the one before it:
+//   business  applies the mutation to the accounts in memory. It is the only thread
+//             that changes them, so mutations take effect in one deterministic order
+//             and no account locks are contended.
+//   journal   adds the new transactions to the history and journals everything the
+//             business thread has finished since its last pass as one append
+//   reply     completes the callers' futures and records how long each mutation took
+// A slot is reused once the reply thread has passed it; callers wait while the ring is
+// full. Mutations that cannot be split into the stages, such as deletions, batches and
+// restores, run as exclusive tasks: the business thread waits for the journal to catch
+// up, then runs the task itself.
+class MutationSequencer implements AutoCloseable {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 1_000_000; // Safety net; stages are unparked when work arrives
+    private static final long FULL_RING_PARK_NANOS = 50_000;
+
+    enum Kind {
+        CREATE,
+        DEPOSIT,
+        WITHDRAWAL,
+        TRANSFER,
+        TOGGLE_STATUS,
+        EXCLUSIVE
+    }
+
+    // One mutation in flight. Filled in by its caller, completed by the business
+    // thread, journaled, then cleared by the reply thread for the next round.
+    private static final class Slot {
+        private volatile long sequence = -1; // Written last by the caller; publishes the fields below
+        private Kind kind;
+        private String accountNumber;
+        private String pin;
+        private String toAccount;     // Transfers only
+        private String name;          // Creates only
+        private String accountType;   // Creates only
+        private double amount;
+        private Supplier<?> task;     // Exclusive tasks only
+        private long publishedNanos;
+        private CompletableFuture<Object> future;
+        private Object result;
+        private Throwable failure;
+        private final List<Customer> changedCustomers = new ArrayList<>(2);
+        private final List<Transaction> newTransactions = new ArrayList<>(2);
+    }
+
+    // A consumer thread and how far through the ring it is
+    private static final class Stage {
+        private final Thread thread;
+        private volatile long cursor = -1; // Last sequence finished
+        private volatile boolean sleeping;
+
+        Stage(Runnable loop, String name) {
+            this.thread = new Thread(loop, name);
+            thread.setDaemon(true);
+        }
+
+        void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private final BankingSystem bankingSystem;
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1); // Last sequence handed to a caller
+    private final AtomicInteger publishing = new AtomicInteger(); // Callers between claim and publish
+    private final Stage business;
+    private final Stage journal;
+    private final Stage reply;
+    private final LatencyHistogram latency = new LatencyHistogram(); // Written by the reply thread only
+    private volatile boolean closed;
+    private volatile long lastSequence = Long.MAX_VALUE; // Set on close: the stages stop once past it
+
+    // The ring size is rounded up to a power of two
+    MutationSequencer(BankingSystem bankingSystem, int ringSize) {
+        this.bankingSystem = bankingSystem;
+        int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        this.ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.business = new Stage(this::runBusiness, "banking-sequencer-business");
+        this.journal = new Stage(this::runJournal, "banking-sequencer-journal");
+        this.reply = new Stage(this::runReply, "banking-sequencer-reply");
+        business.thread.start();
+        journal.thread.start();
+        reply.thread.start();
+    }
+
+    // The account number of the new account
+    public CompletableFuture<String> createCustomer(String name, String pin, String accountType, double initialDeposit) {
+        return publish(Kind.CREATE, null, pin, null, name, accountType, initialDeposit, null);
+    }
+
+    public CompletableFuture<OperationResult> deposit(String accountNumber, String pin, double amount) {
+        return publish(Kind.DEPOSIT, accountNumber, pin, null, null, null, amount, null);
+    }
+
+    public CompletableFuture<OperationResult> withdraw(String accountNumber, String pin, double amount) {
+        return publish(Kind.WITHDRAWAL, accountNumber, pin, null, null, null, amount, null);
+    }
+
+    public CompletableFuture<OperationResult> transfer(String fromAccount, String fromPin, String toAccount,
+                                                       double amount) {
+        return publish(Kind.TRANSFER, fromAccount, fromPin, toAccount, null, null, amount, null);
+    }
+
+    // False if there is no such account
+    public CompletableFuture<Boolean> toggleAccountStatus(String accountNumber) {
+        return publish(Kind.TOGGLE_STATUS, accountNumber, null, null, null, null, 0, null);
+    }
+
+    // Runs the task on the business thread once every mutation before it has been
+    // journaled, and before any after it is applied. The task journals its own changes.
+    public <T> CompletableFuture<T> exclusive(Supplier<T> task) {
+        return publish(Kind.EXCLUSIVE, null, null, null, null, null, 0, task);
+    }
+
+    // Time from publishing a mutation to completing its future. Figures read while
+    // mutations are running are approximate.
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    // Stops taking mutations, then waits for those already taken to be applied,
+    // journaled and answered
+    @Override
+    public void close() {
+        closed = true;
+        // A caller that claimed a sequence before seeing closed still publishes it
+        while (publishing.get() > 0) {
+            Thread.yield();
+        }
+        lastSequence = claimed.get();
+        for (Stage stage : new Stage[]{business, journal, reply}) {
+            LockSupport.unpark(stage.thread);
+            try {
+                stage.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> publish(Kind kind, String accountNumber, String pin, String toAccount,
+                                             String name, String accountType, double amount, Supplier<?> task) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        publishing.incrementAndGet();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Sequencer is shut down");
+            }
+            long sequence = claimed.incrementAndGet();
+            Slot slot = ring[(int) sequence & mask];
+            // Wait for the reply thread to release the slot from its previous round
+            for (int tries = 0; reply.cursor < sequence - ring.length; tries++) {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+                }
+            }
+            slot.kind = kind;
+            slot.accountNumber = accountNumber;
+            slot.pin = pin;
+            slot.toAccount = toAccount;
+            slot.name = name;
+            slot.accountType = accountType;
+            slot.amount = amount;
+            slot.task = task;
+            slot.future = future;
+            slot.publishedNanos = System.nanoTime();
+            slot.sequence = sequence;
+            business.wake();
+        } finally {
+            publishing.decrementAndGet();
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    private void runBusiness() {
+        for (long next = 0; ; next++) {
+            Slot slot = ring[(int) next & mask];
+            for (int tries = 0; slot.sequence != next; tries++) {
+                if (next > lastSequence) {
+                    return;
+                }
+                idle(business, tries, slot, null, next);
+            }
+            try {
+                slot.result = apply(slot, next);
+            } catch (Throwable e) { // An Error too, or this thread dies and every caller hangs
+                slot.failure = e;
+                slot.changedCustomers.clear(); // Journal nothing of a half-applied mutation
+                slot.newTransactions.clear();
+            }
+            business.cursor = next;
+            journal.wake();
+        }
+    }
+
+    private Object apply(Slot slot, long sequence) {
+        switch (slot.kind) {
+            case CREATE:
+                return bankingSystem.applyCreate(slot.name, slot.pin, slot.accountType, slot.amount,
+                        slot.changedCustomers, slot.newTransactions);
+            case DEPOSIT:
+                return bankingSystem.applyOperation(BatchOperation.Kind.DEPOSIT, slot.accountNumber, slot.pin, null,
+                        slot.amount, "Cash deposit", slot.changedCustomers, slot.newTransactions);
+            case WITHDRAWAL:
+                return bankingSystem.applyOperation(BatchOperation.Kind.WITHDRAWAL, slot.accountNumber, slot.pin, null,
+                        slot.amount, "Cash withdrawal", slot.changedCustomers, slot.newTransactions);
+            case TRANSFER:
+                return bankingSystem.applyOperation(BatchOperation.Kind.TRANSFER, slot.accountNumber, slot.pin,
+                        slot.toAccount, slot.amount, null, slot.changedCustomers, slot.newTransactions);
+            case TOGGLE_STATUS:
+                return bankingSystem.applyToggleStatus(slot.accountNumber, slot.changedCustomers);
+            case EXCLUSIVE:
+                for (int tries = 0; journal.cursor < sequence - 1; tries++) {
+                    idle(business, tries, null, journal, sequence - 1);
+                }
+                return slot.task.get();
+            default:
+                throw new IllegalStateException("Unknown mutation: " + slot.kind);
+        }
+    }
+
+    private void runJournal() {
+        Set<Customer> changedCustomers = new LinkedHashSet<>();
+        List<Transaction> newTransactions = new ArrayList<>();
+        long next = 0;
+        while (true) {
+            long available = awaitCursor(journal, business, next);
+            if (available < next) {
+                return;
+            }
+            // Everything the business thread has finished goes out as one append
+            for (long sequence = next; sequence <= available; sequence++) {
+                Slot slot = ring[(int) sequence & mask];
+                changedCustomers.addAll(slot.changedCustomers);
+                newTransactions.addAll(slot.newTransactions);
+            }
+            if (!changedCustomers.isEmpty()) {
+                try {
+                    bankingSystem.record(new ArrayList<>(changedCustomers), newTransactions);
+                    bankingSystem.afterPersist();
+                } catch (Throwable e) {
+                    // Applied in memory but maybe not on disk: the callers must not see success
+                    System.err.println("Error journaling mutations: " + e.getMessage());
+                    for (long sequence = next; sequence <= available; sequence++) {
+                        Slot slot = ring[(int) sequence & mask];
+                        if (slot.failure == null) {
+                            slot.failure = e;
+                        }
+                    }
+                }
+                changedCustomers.clear();
+                newTransactions.clear();
+            }
+            journal.cursor = available;
+            reply.wake();
+            business.wake(); // It may be holding an exclusive task until the journal catches up
+            next = available + 1;
+        }
+    }
+
+    private void runReply() {
+        long next = 0;
+        while (true) {
+            long available = awaitCursor(reply, journal, next);
+            if (available < next) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (long sequence = next; sequence <= available; sequence++) {
+                Slot slot = ring[(int) sequence & mask];
+                CompletableFuture<Object> future = slot.future;
+                Object result = slot.result;
+                Throwable failure = slot.failure;
+                latency.record(now - slot.publishedNanos);
+                slot.accountNumber = null;
+                slot.pin = null;
+                slot.toAccount = null;
+                slot.name = null;
+                slot.accountType = null;
+                slot.task = null;
+                slot.future = null;
+                slot.result = null;
+                slot.failure = null;
+                slot.changedCustomers.clear();
+                slot.newTransactions.clear();
+                reply.cursor = sequence; // Frees the slot for the next round
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(result);
+                }
+            }
+            next = available + 1;
+        }
+    }
+
+    // The cursor of the stage ahead once it has reached the given sequence, or less
+    // than it if the sequencer closed first
+    private long awaitCursor(Stage self, Stage ahead, long sequence) {
+        for (int tries = 0; ; tries++) {
+            long available = ahead.cursor;
+            if (available >= sequence) {
+                return available;
+            }
+            if (sequence > lastSequence) {
+                return available;
+            }
+            idle(self, tries, null, ahead, sequence);
+        }
+    }
+
+    // Waits a little for the awaited slot to be published or the awaited stage to reach
+    // the sequence: spins, then yields, then parks until woken. The sleeping flag is
+    // raised before the condition is checked again, so a wake-up sent in between is not
+    // lost; close() unparks every stage so that it sees lastSequence.
+    private void idle(Stage self, int tries, Slot awaitedSlot, Stage awaitedStage, long sequence) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            self.sleeping = true;
+            boolean ready = awaitedSlot != null ? awaitedSlot.sequence == sequence : awaitedStage.cursor >= sequence;
+            if (!ready) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            self.sleeping = false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// Outcome of one account operation: whether it succeeded, why not if it failed, and
+// the balance afterwards (the available balance when funds were short). Lets callers
+// other than the console, such as the network server, report the result themselves.
+class OperationResult {
+    enum Status {
+        OK,
+        INVALID_CREDENTIALS,
+        ACCOUNT_NOT_FOUND,
+        ACCOUNT_SUSPENDED,
+        INVALID_AMOUNT,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final Status status;
+    private final String message;
+    private final double balance;
+
+    private OperationResult(Status status, String message, double balance) {
+        this.status = status;
+        this.message = message;
+        this.balance = balance;
+    }
+
+    static OperationResult ok(double balance) {
+        return new OperationResult(Status.OK, null, balance);
+    }
+
+    static OperationResult failure(Status status, String message) {
+        return new OperationResult(status, message, Double.NaN);
+    }
+
+    static OperationResult failure(Status status, String message, double balance) {
+        return new OperationResult(status, message, balance);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // Null on success
+    public String getMessage() {
+        return message;
+    }
+
+    // NaN if the operation failed before reaching the account
+    public double getBalance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "OK " + String.format("%.2f", balance) : status + " " + message;
+    }
+}
@@ -0,0 +1,26 @@
+import java.util.List;
+
+// One page of a listing plus the cursor of the page after it. Cursors are opaque
+// tokens handed back by the query that produced the page; null asks for the first page.
+class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    // Null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
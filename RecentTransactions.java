@@ -0,0 +1,116 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+// The newest transactions of one account in a fixed-size ring, oldest first, so the
+// "recent transactions" screen never has to touch the rest of the history. Entries
+// are row ids into the service's columns, so a ring costs a few ints per account and
+// Transaction objects are only made when it is read. In streaming mode an entry whose
+// row is paged out, or that was read back from history, is held as its Transaction.
+class RecentTransactions {
+    private final int[] rows;
+    private Transaction[] pagedOut; // Null until an entry has no resident row
+    private int head; // Slot of the oldest entry held
+    private int size;
+
+    RecentTransactions(int capacity) {
+        this.rows = new int[capacity];
+    }
+
+    // Adds a resident row, in time order; ties keep arrival order. Normally it is newest.
+    void add(int row, TransactionColumns columns) {
+        int position = size;
+        while (position > 0 && isBefore(row, position - 1, columns)) {
+            position--;
+        }
+        insert(position, row, null);
+    }
+
+    // Adds a transaction read back from history. Callers add these oldest first, and
+    // before any resident row.
+    void addPagedOut(Transaction transaction) {
+        if (pagedOut == null) {
+            pagedOut = new Transaction[rows.length];
+        }
+        insert(size, -1, transaction);
+    }
+
+    // Call before the columns drop the rows below keepFrom: entries on those rows are
+    // swapped for their Transaction while it can still be made
+    void pageOut(int keepFrom, TransactionColumns columns) {
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            if (held(slot) == null && rows[slot] < keepFrom) {
+                if (pagedOut == null) {
+                    pagedOut = new Transaction[rows.length];
+                }
+                pagedOut[slot] = columns.get(rows[slot]);
+            }
+        }
+    }
+
+    int capacity() {
+        return rows.length;
+    }
+
+    // The newest limit transactions, oldest first
+    List<Transaction> newest(int limit, TransactionColumns columns) {
+        int count = Math.min(limit, size);
+        List<Transaction> newest = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            int slot = slot(i);
+            Transaction held = held(slot);
+            newest.add(held != null ? held : columns.get(rows[slot]));
+        }
+        return newest;
+    }
+
+    private void insert(int position, int row, Transaction transaction) {
+        int capacity = rows.length;
+        if (capacity == 0) {
+            return;
+        }
+        if (size == capacity) {
+            if (position == 0) {
+                return; // Older than everything kept
+            }
+            // Evict the oldest to make room
+            if (pagedOut != null) {
+                pagedOut[head] = null;
+            }
+            head = (head + 1) % capacity;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            rows[slot(i)] = rows[slot(i - 1)];
+            if (pagedOut != null) {
+                pagedOut[slot(i)] = pagedOut[slot(i - 1)];
+            }
+        }
+        rows[slot(position)] = row;
+        if (pagedOut != null) {
+            pagedOut[slot(position)] = transaction;
+        }
+        size++;
+    }
+
+    private boolean isBefore(int row, int index, TransactionColumns columns) {
+        int slot = slot(index);
+        Transaction held = held(slot);
+        if (held == null) {
+            return columns.compareTimestamps(row, rows[slot]) < 0;
+        }
+        LocalDateTime timestamp = held.getTimestamp();
+        return columns.compareTimestamp(row, timestamp.toEpochSecond(ZoneOffset.UTC), timestamp.getNano()) < 0;
+    }
+
+    private Transaction held(int slot) {
+        return pagedOut != null ? pagedOut[slot] : null;
+    }
+
+    private int slot(int index) {
+        return (head + index) % rows.length;
+    }
+}
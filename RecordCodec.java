@@ -0,0 +1,344 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Codec for the pipe-delimited customers.txt and transactions.txt line formats.
+// Produces exactly the text of the original String.format/DateTimeFormatter code,
+// but works on caller-supplied buffers: no regex split, no substrings for numeric
+// or date fields, and no intermediate strings while formatting. The only per-row
+// allocations left are the model objects themselves and their free-text fields.
+// Account numbers are interned, and transfer descriptions are kept as a reference to
+// the counterparty's (interned) account number rather than as their own string.
+class RecordCodec {
+    public static final String DELETED_MARKER = "DELETED";
+
+    private static final int MAX_FIELDS = 7; // One more than the widest record, to detect extra fields
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Values that repeat on almost every row are returned as shared constants
+    private static final String[] KNOWN_VALUES = {
+            "SAVINGS", "CHECKING",
+            "Cash deposit", "Cash withdrawal", "Initial deposit",
+            "true", "false"
+    };
+
+    // Field start/end offsets, one scratch array per loader thread
+    private static final ThreadLocal<int[]> FIELD_BOUNDS = ThreadLocal.withInitial(() -> new int[MAX_FIELDS * 2]);
+
+    private final SymbolTable accountNumbers = new SymbolTable();
+
+    public interface LineParser<T> {
+        // Parses text[start, end), a single line without its terminator; null if unparseable
+        T parse(CharSequence text, int start, int end);
+    }
+
+    // A parsed customers.txt line: the account's new state, or a deletion
+    public static class CustomerRecord {
+        private final String accountNumber;
+        private final Customer customer;
+
+        CustomerRecord(String accountNumber, Customer customer) {
+            this.accountNumber = accountNumber;
+            this.customer = customer;
+        }
+
+        // Later records for the same account supersede earlier ones
+        public void applyTo(java.util.Map<String, Customer> customers) {
+            if (customer == null) {
+                customers.remove(accountNumber);
+            } else {
+                customers.put(accountNumber, customer);
+            }
+        }
+    }
+
+    // Formatting
+
+    public void appendCustomer(StringBuilder out, Customer customer) {
+        Account account = customer.getAccount();
+        out.append(account.getAccountNumber()).append('|')
+                .append(customer.getName()).append('|')
+                .append(customer.getPin()).append('|')
+                .append(account.getAccountType()).append('|');
+        appendAmount(out, account.getBalance());
+        out.append('|').append(account.isActive());
+    }
+
+    public void appendDeletion(StringBuilder out, String accountNumber) {
+        out.append(accountNumber).append('|').append(DELETED_MARKER);
+    }
+
+    public void appendTransaction(StringBuilder out, Transaction transaction) {
+        out.append(transaction.getAccountNumber()).append('|');
+        appendTimestamp(out, transaction.getTimestamp());
+        out.append('|').append(transaction.getType().name()).append('|');
+        appendAmount(out, transaction.getAmount());
+        out.append('|');
+        if (transaction.getCounterparty() != null) {
+            out.append(transaction.getType().transferPrefix()).append(transaction.getCounterparty());
+        } else {
+            out.append(transaction.getDescription());
+        }
+    }
+
+    // Same output as String.format("%.2f", amount)
+    public void appendAmount(StringBuilder out, double amount) {
+        double scaled = amount * 100;
+        long cents = Math.round(scaled);
+        if (Double.doubleToRawLongBits(amount) < 0 || cents >= 1L << 53 || Math.abs(scaled - cents) > 1e-6) {
+            // Negative, huge, or not a whole number of cents: let Formatter do its rounding
+            out.append(String.format("%.2f", amount));
+            return;
+        }
+        out.append(cents / 100).append('.');
+        int fraction = (int) (cents % 100);
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    // Same output as DateTimeFormatter.ISO_LOCAL_DATE_TIME
+    public void appendTimestamp(StringBuilder out, LocalDateTime timestamp) {
+        int year = timestamp.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            return;
+        }
+        appendDigits(out, year, 4);
+        out.append('-');
+        appendDigits(out, timestamp.getMonthValue(), 2);
+        out.append('-');
+        appendDigits(out, timestamp.getDayOfMonth(), 2);
+        out.append('T');
+        appendDigits(out, timestamp.getHour(), 2);
+        out.append(':');
+        appendDigits(out, timestamp.getMinute(), 2);
+        out.append(':');
+        appendDigits(out, timestamp.getSecond(), 2);
+
+        int nano = timestamp.getNano();
+        if (nano > 0) {
+            // Nine-digit fraction with trailing zeros dropped
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            out.append('.');
+            appendDigits(out, nano, digits);
+        }
+    }
+
+    // Parsing
+
+    public CustomerRecord parseCustomerRecord(CharSequence text, int start, int end) {
+        int[] bounds = FIELD_BOUNDS.get();
+        int fields = split(text, start, end, bounds);
+        if (fields == 2 && matches(text, bounds[2], bounds[3], DELETED_MARKER)) {
+            // Tombstone appended by deleteCustomer
+            return new CustomerRecord(accountNumber(text, bounds[0], bounds[1]), null);
+        } else if (fields == 6) {
+            String accountNumber = accountNumber(text, bounds[0], bounds[1]);
+            String name = string(text, bounds[2], bounds[3]);
+            String pin = string(text, bounds[4], bounds[5]);
+            String accountType = string(text, bounds[6], bounds[7]);
+            double balance = parseAmount(text, bounds[8], bounds[9]);
+            boolean isActive = matchesIgnoreCase(text, bounds[10], bounds[11], "true");
+
+            Account account = new Account(accountNumber, name, accountType, balance);
+            account.setActive(isActive);
+            return new CustomerRecord(accountNumber, new Customer(name, pin, account));
+        }
+        return null;
+    }
+
+    public Transaction parseTransaction(CharSequence text, int start, int end) {
+        int[] bounds = FIELD_BOUNDS.get();
+        if (split(text, start, end, bounds) != 5) {
+            return null;
+        }
+        TransactionType type = parseType(text, bounds[4], bounds[5]);
+        if (type == null) {
+            return null;
+        }
+        String accountNumber = accountNumber(text, bounds[0], bounds[1]);
+        LocalDateTime timestamp = parseTimestamp(text, bounds[2], bounds[3]);
+        double amount = parseAmount(text, bounds[6], bounds[7]);
+
+        // "Transfer to ACC..." and "Transfer from ACC..." keep only the counterparty
+        String prefix = type.transferPrefix();
+        int descriptionStart = bounds[8];
+        int descriptionEnd = bounds[9];
+        if (prefix != null && descriptionEnd - descriptionStart > prefix.length()
+                && matches(text, descriptionStart, descriptionStart + prefix.length(), prefix)) {
+            return Transaction.transfer(accountNumber, timestamp, type, amount,
+                    accountNumber(text, descriptionStart + prefix.length(), descriptionEnd));
+        }
+        return new Transaction(accountNumber, timestamp, type, amount, string(text, descriptionStart, descriptionEnd));
+    }
+
+    // Null for a type this version does not know
+    public TransactionType parseType(CharSequence text, int start, int end) {
+        for (TransactionType type : TransactionType.values()) {
+            if (matches(text, start, end, type.name())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    public String accountNumber(CharSequence text, int start, int end) {
+        return accountNumbers.intern(text.subSequence(start, end).toString());
+    }
+
+    // Same result as Double.parseDouble for the plain decimals this format writes
+    public double parseAmount(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                digits = -1; // Exponents, signs, whitespace: not a plain decimal
+                break;
+            }
+        }
+        if (digits <= 0 || digits > 15 || decimals > 22) {
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        }
+        // Both operands are exact doubles, so the division rounds exactly like parseDouble
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // Same result as LocalDateTime.parse(..., ISO_LOCAL_DATE_TIME) for what appendTimestamp writes
+    public LocalDateTime parseTimestamp(CharSequence text, int start, int end) {
+        int length = end - start;
+        if ((length == 16 || length >= 19) && text.charAt(start + 4) == '-' && text.charAt(start + 7) == '-'
+                && text.charAt(start + 10) == 'T' && text.charAt(start + 13) == ':') {
+            int year = digits(text, start, 4);
+            int month = digits(text, start + 5, 2);
+            int day = digits(text, start + 8, 2);
+            int hour = digits(text, start + 11, 2);
+            int minute = digits(text, start + 14, 2);
+            int second = 0;
+            int nano = 0;
+            boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0;
+
+            if (valid && length >= 19) {
+                second = digits(text, start + 17, 2);
+                valid = text.charAt(start + 16) == ':' && second >= 0;
+                if (valid && length > 19) {
+                    int fractionDigits = length - 20;
+                    nano = digits(text, start + 20, fractionDigits);
+                    valid = text.charAt(start + 19) == '.' && fractionDigits >= 1 && fractionDigits <= 9 && nano >= 0;
+                    for (int i = fractionDigits; valid && i < 9; i++) {
+                        nano *= 10;
+                    }
+                }
+            }
+            if (valid) {
+                return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+            }
+        }
+        return LocalDateTime.parse(text.subSequence(start, end), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    // Records field bounds into bounds[2i], bounds[2i+1] and returns the field count,
+    // dropping trailing empty fields the way String.split does
+    private int split(CharSequence text, int start, int end, int[] bounds) {
+        int fields = 0;
+        int significant = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == '|') {
+                if (fields < MAX_FIELDS) {
+                    bounds[fields * 2] = fieldStart;
+                    bounds[fields * 2 + 1] = i;
+                }
+                fields++;
+                if (i > fieldStart) {
+                    significant = fields;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        return significant;
+    }
+
+    private String string(CharSequence text, int start, int end) {
+        for (String known : KNOWN_VALUES) {
+            if (matches(text, start, end, known)) {
+                return known;
+            }
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    private boolean matches(CharSequence text, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(CharSequence text, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Non-negative value of count decimal digits, or -1 if any character is not a digit
+    private int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void appendDigits(StringBuilder out, int value, int width) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private int pow10(int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
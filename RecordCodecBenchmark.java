@@ -0,0 +1,117 @@
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+// Time and heap allocation per row of RecordCodec against the String.format and
+// line.split code it replaced, formatting and parsing transactions.txt lines.
+// Allocation comes from the JVM's per-thread counter, so it includes the parsed
+// Transaction itself. Each pair should print the same checksum.
+//   java RecordCodecBenchmark [rows] [rounds]
+public class RecordCodecBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // The line format code as FileManager had it before RecordCodec
+    private static class LegacyFormat {
+        static String format(Transaction transaction) {
+            return String.format("%s|%s|%s|%.2f|%s",
+                    transaction.getAccountNumber(),
+                    transaction.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                    transaction.getType(),
+                    transaction.getAmount(),
+                    transaction.getDescription()
+            );
+        }
+
+        static Transaction parse(String line) {
+            String[] parts = line.split("\\|");
+            if (parts.length == 5) {
+                LocalDateTime timestamp = LocalDateTime.parse(parts[1], DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+                return new Transaction(parts[0], timestamp, TransactionType.valueOf(parts[2]),
+                        Double.parseDouble(parts[3]), parts[4]);
+            }
+            return null;
+        }
+    }
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Transaction[] transactions = generate(rows);
+        String[] lines = new String[rows];
+        RecordCodec codec = new RecordCodec();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            line.setLength(0);
+            codec.appendTransaction(line, transactions[i]);
+            lines[i] = line.toString();
+        }
+
+        System.out.printf("%,d rows per run%n", rows);
+        for (int round = 0; round <= rounds; round++) { // The first round warms up the JIT
+            String prefix = round == 0 ? "warm-up " : "";
+            measure(prefix + "format legacy", rows, () -> {
+                long checksum = 0;
+                for (Transaction transaction : transactions) {
+                    checksum += LegacyFormat.format(transaction).length();
+                }
+                return checksum;
+            });
+            measure(prefix + "format codec", rows, () -> {
+                long checksum = 0;
+                for (Transaction transaction : transactions) {
+                    line.setLength(0);
+                    codec.appendTransaction(line, transaction);
+                    checksum += line.length();
+                }
+                return checksum;
+            });
+            measure(prefix + "parse legacy", rows, () -> {
+                long checksum = 0;
+                for (String text : lines) {
+                    checksum += (long) LegacyFormat.parse(text).getAmount();
+                }
+                return checksum;
+            });
+            measure(prefix + "parse codec", rows, () -> {
+                long checksum = 0;
+                for (String text : lines) {
+                    checksum += (long) codec.parseTransaction(text, 0, text.length()).getAmount();
+                }
+                return checksum;
+            });
+        }
+    }
+
+    private interface Run {
+        long run();
+    }
+
+    private static void measure(String name, int rows, Run run) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long begin = System.nanoTime();
+        long checksum = run.run();
+        long nanos = System.nanoTime() - begin;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-21s %8.0f ns/row %8.0f B/row   checksum %d%n", name, (double) nanos / rows,
+                (double) allocated / rows, checksum);
+    }
+
+    private static Transaction[] generate(int rows) {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        Transaction[] transactions = new Transaction[rows];
+        for (int i = 0; i < rows; i++) {
+            String account = "ACC" + (100_000 + random.nextInt(100_000));
+            LocalDateTime timestamp = start.plusSeconds(i).plusNanos(random.nextInt(1000) * 1000L);
+            double amount = (1 + random.nextInt(100_000)) / 100.0;
+            transactions[i] = random.nextBoolean()
+                    ? new Transaction(account, timestamp, TransactionType.DEPOSIT, amount, "Cash deposit")
+                    : new Transaction(account, timestamp, TransactionType.WITHDRAWAL, amount, "Cash withdrawal");
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Throughput and latency of BankingSystem's mutations with account locks against the
+// single-writer sequencer. Every thread makes deposits, withdrawals and transfers on
+// random accounts; the latency is what the calling thread waited for each one. Runs
+// against the data files in the working directory, so use an empty one. Durability
+// settings apply to both runs, e.g. -Dbanking.durability=SYNC.
+//   java SequencerBenchmark [threads] [operationsPerThread] [accounts]
+public class SequencerBenchmark {
+    private static final double OPENING_BALANCE = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        System.out.printf("%d threads, %,d operations each, %d accounts%n", threads, operations, accounts);
+        for (boolean sequenced : new boolean[]{false, true}) {
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // createCustomer prints a receipt
+            BankingSystem bankingSystem = new BankingSystem(sequenced);
+            String[] accountNumbers = new String[accounts];
+            for (int i = 0; i < accounts; i++) {
+                accountNumbers[i] = bankingSystem.createCustomer("Customer " + i, "1234", "SAVINGS", OPENING_BALANCE);
+            }
+            System.setOut(console);
+
+            // The first pass warms up the JIT
+            run("warm-up", bankingSystem, accountNumbers, threads, Math.max(1, operations / 10));
+            LatencyHistogram pipeline = bankingSystem.getSequencerLatency();
+            if (pipeline != null) {
+                pipeline.reset(); // Racy, but the warm-up has finished
+            }
+            run(sequenced ? "sequencer" : "locks", bankingSystem, accountNumbers, threads, operations);
+            if (pipeline != null) {
+                System.out.printf("%-10s inside the pipeline: %s%n", "", pipeline.summary());
+            }
+            bankingSystem.shutdown();
+        }
+    }
+
+    // Whole-dollar amounts, so the accounts must end on exactly the expected total
+    private static void run(String name, BankingSystem bankingSystem, String[] accountNumbers, int threads,
+                            int operations) throws InterruptedException {
+        double before = total(bankingSystem, accountNumbers);
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        LatencyHistogram latency = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                LatencyHistogram own = new LatencyHistogram();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < operations; i++) {
+                    String account = accountNumbers[random.nextInt(accountNumbers.length)];
+                    int amount = 1 + random.nextInt(100);
+                    int choice = random.nextInt(10);
+                    long begin = System.nanoTime();
+                    if (choice < 4) {
+                        if (bankingSystem.depositFunds(account, "1234", amount).isSuccess()) {
+                            deposited.add(amount);
+                        }
+                    } else if (choice < 7) {
+                        if (bankingSystem.withdrawFunds(account, "1234", amount).isSuccess()) {
+                            withdrawn.add(amount);
+                        }
+                    } else {
+                        String toAccount = accountNumbers[random.nextInt(accountNumbers.length)];
+                        bankingSystem.transferFunds(account, "1234", toAccount, amount);
+                    }
+                    own.record(System.nanoTime() - begin);
+                }
+                synchronized (latency) {
+                    latency.add(own);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        double expected = before + deposited.sum() - withdrawn.sum();
+        double total = total(bankingSystem, accountNumbers);
+        System.out.printf("%-10s %,12.0f ops/s   %s   total %s%n", name, latency.getCount() / seconds,
+                latency.summary(),
+                total == expected ? "consistent" : String.format("WRONG: %.2f, expected %.2f", total, expected));
+    }
+
+    private static double total(BankingSystem bankingSystem, String[] accountNumbers) {
+        double total = 0;
+        for (String accountNumber : accountNumbers) {
+            total += bankingSystem.authenticate(accountNumber, "1234").getBalance();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonical instances of strings that repeat across many records, such as account
+// numbers: every transaction of an account then shares one String instead of holding
+// its own copy. Safe to use from the parallel loader threads.
+class SymbolTable {
+    private final ConcurrentHashMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    public String intern(String value) {
+        String existing = symbols.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Collection;
+import java.util.DoubleSummaryStatistics;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// Figures for the admin "System Statistics" screen: money under management and
+// account status from the customers, plus the bank-wide transaction statistics
+class SystemStatistics {
+    private final int customerCount;
+    private final long activeCount;
+    private final double totalBalance;
+    private final Map<String, DoubleSummaryStatistics> balanceByAccountType;
+    private final TransactionStatistics transactions;
+
+    private SystemStatistics(int customerCount, long activeCount, Map<String, DoubleSummaryStatistics> balanceByAccountType,
+                             TransactionStatistics transactions) {
+        this.customerCount = customerCount;
+        this.activeCount = activeCount;
+        this.balanceByAccountType = balanceByAccountType;
+        this.totalBalance = balanceByAccountType.values().stream().mapToDouble(DoubleSummaryStatistics::getSum).sum();
+        this.transactions = transactions;
+    }
+
+    // The customer figures come from one parallel pass over the accounts
+    public static SystemStatistics compute(Collection<Customer> customers, TransactionStatistics transactions) {
+        Map<String, DoubleSummaryStatistics> byType = customers.parallelStream()
+                .map(Customer::getAccount)
+                .collect(Collectors.groupingBy(Account::getAccountType, TreeMap::new,
+                        Collectors.summarizingDouble(Account::getBalance)));
+        long active = customers.parallelStream()
+                .filter(customer -> customer.getAccount().isActive())
+                .count();
+        return new SystemStatistics(customers.size(), active, byType, transactions);
+    }
+
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    public long getActiveCount() {
+        return activeCount;
+    }
+
+    public long getSuspendedCount() {
+        return customerCount - activeCount;
+    }
+
+    // Total deposits under management: the sum of all balances
+    public double getTotalBalance() {
+        return totalBalance;
+    }
+
+    // Account count and balance total per account type, in type order
+    public Map<String, DoubleSummaryStatistics> getBalanceByAccountType() {
+        return balanceByAccountType;
+    }
+
+    public TransactionStatistics getTransactions() {
+        return transactions;
+    }
+}
@@ -1,70 +1,101 @@
-import java.time.LocalDateTime;
-
-public class Transaction {
-    private String accountNumber;
-    private LocalDateTime timestamp;
-    private String type;
-    private double amount;
-    private String description;
-
-    public Transaction(String accountNumber, String type, double amount, String description) {
-        this.accountNumber = accountNumber;
-        this.timestamp = LocalDateTime.now();
-        this.type = type;
-        this.amount = amount;
-        this.description = description;
-    }
-
-    // Getters
-    public String getAccountNumber() {
-        return accountNumber;
-    }
-
-    public LocalDateTime getTimestamp() {
-        return timestamp;
-    }
-
-    public String getType() {
-        return type;
-    }
-
-    public double getAmount() {
-        return amount;
-    }
-
-    public String getDescription() {
-        return description;
-    }
-
-    // Setters
-    public void setAccountNumber(String accountNumber) {
-        this.accountNumber = accountNumber;
-    }
-
-    public void setTimestamp(LocalDateTime timestamp) {
-        this.timestamp = timestamp;
-    }
-
-    public void setType(String type) {
-        this.type = type;
-    }
-
-    public void setAmount(double amount) {
-        this.amount = amount;
-    }
-
-    public void setDescription(String description) {
-        this.description = description;
-    }
-
-    @Override
-    public String toString() {
-        return "Transaction{" +
-                "accountNumber='" + accountNumber + '\'' +
-                ", timestamp=" + timestamp +
-                ", type='" + type + '\'' +
-                ", amount=" + amount +
-                ", description='" + description + '\'' +
-                '}';
-    }
-}
+import java.time.LocalDateTime;
+
+public class Transaction {
+    private String accountNumber;
+    private LocalDateTime timestamp;
+    private TransactionType type;
+    private double amount;
+    private String description;  // Null for transfers, whose text is derived from the counterparty
+    private String counterparty; // The other account of a transfer, otherwise null
+
+    public Transaction(String accountNumber, TransactionType type, double amount, String description) {
+        this(accountNumber, LocalDateTime.now(), type, amount, description);
+    }
+
+    // Used when loading a stored transaction, so the original timestamp is kept
+    public Transaction(String accountNumber, LocalDateTime timestamp, TransactionType type, double amount, String description) {
+        this.accountNumber = accountNumber;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.amount = amount;
+        this.description = description;
+    }
+
+    // A transfer leg: only the counterparty's account number is held, and the usual
+    // "Transfer to ..."/"Transfer from ..." text is rendered when asked for
+    public static Transaction transfer(String accountNumber, LocalDateTime timestamp, TransactionType type,
+                                       double amount, String counterparty) {
+        if (!type.isTransfer()) {
+            throw new IllegalArgumentException("Not a transfer type: " + type);
+        }
+        Transaction transaction = new Transaction(accountNumber, timestamp, type, amount, null);
+        transaction.counterparty = counterparty;
+        return transaction;
+    }
+
+    public static Transaction transfer(String accountNumber, TransactionType type, double amount, String counterparty) {
+        return transfer(accountNumber, LocalDateTime.now(), type, amount, counterparty);
+    }
+
+    // Getters
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        if (description == null && counterparty != null) {
+            return type.transferPrefix() + counterparty;
+        }
+        return description;
+    }
+
+    public String getCounterparty() {
+        return counterparty;
+    }
+
+    // Setters
+    public void setAccountNumber(String accountNumber) {
+        this.accountNumber = accountNumber;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    // Free text replaces any structural transfer description
+    public void setDescription(String description) {
+        this.description = description;
+        this.counterparty = null;
+    }
+
+    @Override
+    public String toString() {
+        return "Transaction{" +
+                "accountNumber='" + accountNumber + '\'' +
+                ", timestamp=" + timestamp +
+                ", type='" + type + '\'' +
+                ", amount=" + amount +
+                ", description='" + getDescription() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,224 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Resident transactions stored column by column in parallel primitive arrays: about
+// 29 bytes a row, against 150+ for a Transaction with its strings and LocalDateTime.
+// Account numbers and descriptions are dictionary-encoded, the type is its enum code,
+// and a transfer's description is just its counterparty's account id. A Transaction
+// is only created when a caller asks for a row.
+// Rows keep their id for as long as they are held; dropping the oldest rows does
+// not renumber the rest.
+class TransactionColumns {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] accountIds = new int[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY]; // UTC-based, like BinaryTransactionStore
+    private int[] nanos = new int[INITIAL_CAPACITY];
+    private byte[] typeCodes = new byte[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private int[] descriptionIds = new int[INITIAL_CAPACITY]; // Negative: -1 - counterparty's account id
+
+    private int firstRow; // Id of the oldest row held
+    private int start;    // Array index of that row
+    private int size;
+
+    private final Dictionary accounts = new Dictionary();
+    private final Dictionary descriptions = new Dictionary();
+
+    public interface RowVisitor {
+        void visit(int row, int accountId, byte typeCode, long epochSecond, double amount);
+    }
+
+    // Returns the new row's id
+    public int add(Transaction transaction) {
+        if (start + size == accountIds.length) {
+            grow();
+        }
+        int index = start + size;
+        LocalDateTime timestamp = transaction.getTimestamp();
+        accountIds[index] = accounts.id(transaction.getAccountNumber());
+        epochSeconds[index] = timestamp.toEpochSecond(ZoneOffset.UTC);
+        nanos[index] = timestamp.getNano();
+        typeCodes[index] = transaction.getType().code();
+        amounts[index] = transaction.getAmount();
+        descriptionIds[index] = transaction.getCounterparty() != null
+                ? -1 - accounts.id(transaction.getCounterparty())
+                : descriptions.id(transaction.getDescription());
+        size++;
+        return firstRow + size - 1;
+    }
+
+    public int firstRow() {
+        return firstRow;
+    }
+
+    // One past the newest row
+    public int endRow() {
+        return firstRow + size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Transaction get(int row) {
+        int index = index(row);
+        String accountNumber = accounts.value(accountIds[index]);
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(epochSeconds[index], nanos[index], ZoneOffset.UTC);
+        TransactionType type = TransactionType.fromCode(typeCodes[index]);
+        int descriptionId = descriptionIds[index];
+        if (descriptionId < 0) {
+            return Transaction.transfer(accountNumber, timestamp, type, amounts[index], accounts.value(-1 - descriptionId));
+        }
+        return new Transaction(accountNumber, timestamp, type, amounts[index], descriptions.value(descriptionId));
+    }
+
+    public List<Transaction> get(int fromRow, int toRow) {
+        List<Transaction> rows = new ArrayList<>(Math.max(0, toRow - fromRow));
+        for (int row = fromRow; row < toRow; row++) {
+            rows.add(get(row));
+        }
+        return rows;
+    }
+
+    // Visits rows [fromRow, toRow) straight from the columns; nothing is allocated per row
+    public void scan(int fromRow, int toRow, RowVisitor visitor) {
+        int offset = start - firstRow;
+        for (int row = Math.max(fromRow, firstRow); row < Math.min(toRow, endRow()); row++) {
+            int index = offset + row;
+            visitor.visit(row, accountIds[index], typeCodes[index], epochSeconds[index], amounts[index]);
+        }
+    }
+
+    // Account ids run from 0 to accountCount() - 1
+    public int accountCount() {
+        return accounts.size();
+    }
+
+    public String accountNumberOf(int accountId) {
+        return accounts.value(accountId);
+    }
+
+    public String accountNumber(int row) {
+        return accounts.value(accountIds[index(row)]);
+    }
+
+    public TransactionType type(int row) {
+        return TransactionType.fromCode(typeCodes[index(row)]);
+    }
+
+    public int accountId(int row) {
+        return accountIds[index(row)];
+    }
+
+    public double amount(int row) {
+        return amounts[index(row)];
+    }
+
+    // Account id of a transfer's other account, or -1 if the row is not a transfer
+    public int counterpartyId(int row) {
+        int descriptionId = descriptionIds[index(row)];
+        return descriptionId < 0 ? -1 - descriptionId : -1;
+    }
+
+    // -1 if no row held or dropped so far belongs to the account
+    public int findAccountId(String accountNumber) {
+        return accounts.find(accountNumber);
+    }
+
+    // Negative, zero or positive as the row's timestamp is before, at or after the given one
+    public int compareTimestamp(int row, long epochSecond, int nano) {
+        int index = index(row);
+        int cmp = Long.compare(epochSeconds[index], epochSecond);
+        return cmp != 0 ? cmp : Integer.compare(nanos[index], nano);
+    }
+
+    public int compareTimestamps(int row, int otherRow) {
+        int other = index(otherRow);
+        return compareTimestamp(row, epochSeconds[other], nanos[other]);
+    }
+
+    // Forgets the oldest rows; dictionary entries are kept for rows added later
+    public void dropFirst(int count) {
+        count = Math.min(count, size);
+        firstRow += count;
+        start += count;
+        size -= count;
+        if (start > accountIds.length / 2) {
+            compact(accountIds.length);
+        }
+    }
+
+    public void clear() {
+        firstRow += size;
+        start = 0;
+        size = 0;
+    }
+
+    private int index(int row) {
+        if (row < firstRow || row >= firstRow + size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not resident");
+        }
+        return start + row - firstRow;
+    }
+
+    private void grow() {
+        // Reclaim dropped rows first when that frees enough room
+        compact(start > accountIds.length / 4 ? accountIds.length : accountIds.length * 2);
+    }
+
+    private void compact(int capacity) {
+        int[] newAccountIds = new int[capacity];
+        long[] newEpochSeconds = new long[capacity];
+        int[] newNanos = new int[capacity];
+        byte[] newTypeCodes = new byte[capacity];
+        double[] newAmounts = new double[capacity];
+        int[] newDescriptionIds = new int[capacity];
+        System.arraycopy(accountIds, start, newAccountIds, 0, size);
+        System.arraycopy(epochSeconds, start, newEpochSeconds, 0, size);
+        System.arraycopy(nanos, start, newNanos, 0, size);
+        System.arraycopy(typeCodes, start, newTypeCodes, 0, size);
+        System.arraycopy(amounts, start, newAmounts, 0, size);
+        System.arraycopy(descriptionIds, start, newDescriptionIds, 0, size);
+        accountIds = newAccountIds;
+        epochSeconds = newEpochSeconds;
+        nanos = newNanos;
+        typeCodes = newTypeCodes;
+        amounts = newAmounts;
+        descriptionIds = newDescriptionIds;
+        start = 0;
+    }
+
+    // Each distinct string is held once and referred to by its insertion index
+    private static class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int find(String value) {
+            Integer id = ids.get(value);
+            return id != null ? id : -1;
+        }
+
+        String value(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Disk-resident transaction history that TransactionService can page in on demand.
+// Positions are opaque to callers: segment-qualified byte offsets into the text log
+// or row numbers in transactions.dat, depending on the storage format.
+interface TransactionHistory {
+
+    interface PositionVisitor {
+        void visit(String accountNumber, long position);
+    }
+
+    // Visits every stored transaction at or after fromPosition, in log order,
+    // and returns the position to resume from next time
+    long indexTransactions(long fromPosition, PositionVisitor visitor);
+
+    // Reads positions[from..to) back into Transaction objects, in the given order
+    List<Transaction> readTransactions(long[] positions, int from, int to);
+
+    // Position of the first transaction in the log segment currently being written
+    long activeSegmentStart();
+
+    // Positions of an account's transactions (every account's if accountNumber is null)
+    // that lie before the given position, in log order. Sealed segments whose index
+    // shows they do not contain the account are skipped without being read.
+    long[] positionsBefore(String accountNumber, long before);
+
+    // As above, but only from sealed segments whose time span overlaps [start, end]; the
+    // caller still filters the transactions themselves
+    long[] positionsBefore(String accountNumber, long before, LocalDateTime start, LocalDateTime end);
+
+    // False only when the position lies in a sealed segment whose whole time span
+    // falls outside [start, end]
+    boolean segmentOverlaps(long position, LocalDateTime start, LocalDateTime end);
+}
@@ -0,0 +1,99 @@
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+// Criteria for TransactionService.query. Every criterion is optional and the ones
+// that are set must all match, e.g.
+//   new TransactionQuery().types(TransactionType.TRANSFER_OUT).amountAtLeast(10000).from(lastWeek)
+class TransactionQuery {
+    private String accountNumber;
+    private Set<TransactionType> types;    // Null for any type
+    private LocalDateTime from;            // Inclusive
+    private LocalDateTime to;              // Exclusive
+    private double minAmount = Double.NEGATIVE_INFINITY;
+    private double maxAmount = Double.POSITIVE_INFINITY;
+    private String counterparty;
+
+    public TransactionQuery account(String accountNumber) {
+        this.accountNumber = accountNumber;
+        return this;
+    }
+
+    public TransactionQuery types(TransactionType first, TransactionType... rest) {
+        return types(EnumSet.of(first, rest));
+    }
+
+    public TransactionQuery types(Set<TransactionType> types) {
+        this.types = Collections.unmodifiableSet(EnumSet.copyOf(types));
+        return this;
+    }
+
+    public TransactionQuery from(LocalDateTime from) {
+        this.from = from;
+        return this;
+    }
+
+    public TransactionQuery to(LocalDateTime to) {
+        this.to = to;
+        return this;
+    }
+
+    public TransactionQuery amountAtLeast(double minAmount) {
+        this.minAmount = minAmount;
+        return this;
+    }
+
+    public TransactionQuery amountAtMost(double maxAmount) {
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    // The other account of a transfer
+    public TransactionQuery counterparty(String counterparty) {
+        this.counterparty = counterparty;
+        return this;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public Set<TransactionType> getTypes() {
+        return types;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public double getMinAmount() {
+        return minAmount;
+    }
+
+    public double getMaxAmount() {
+        return maxAmount;
+    }
+
+    public String getCounterparty() {
+        return counterparty;
+    }
+
+    public boolean hasTimeRange() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Transaction transaction) {
+        return (accountNumber == null || accountNumber.equals(transaction.getAccountNumber()))
+                && (types == null || types.contains(transaction.getType()))
+                && (from == null || !transaction.getTimestamp().isBefore(from))
+                && (to == null || transaction.getTimestamp().isBefore(to))
+                && transaction.getAmount() >= minAmount && transaction.getAmount() <= maxAmount
+                && (counterparty == null || Objects.equals(counterparty, transaction.getCounterparty()));
+    }
+}
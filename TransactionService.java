@@ -1,71 +1,1090 @@
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
-
-// TransactionService class
-class TransactionService {
-    private List<Transaction> transactions;
-
-    public TransactionService() {
-        this.transactions = new ArrayList<>();
-    }
-
-    public void addTransaction(Transaction transaction) {
-        if (transaction != null) {
-            transactions.add(transaction);
-        }
-    }
-
-    public List<Transaction> getAllTransactions() {
-        return new ArrayList<>(transactions);
-    }
-
-    public List<Transaction> getTransactionsByAccount(String accountNumber) {
-        return transactions.stream()
-                .filter(t -> t.getAccountNumber().equals(accountNumber))
-                .collect(Collectors.toList());
-    }
-
-    public List<Transaction> getTransactionsByType(String type) {
-        return transactions.stream()
-                .filter(t -> t.getType().equalsIgnoreCase(type))
-                .collect(Collectors.toList());
-    }
-
-    public List<Transaction> getTransactionsByDateRange(String accountNumber,
-                                                        java.time.LocalDateTime startDate,
-                                                        java.time.LocalDateTime endDate) {
-        return transactions.stream()
-                .filter(t -> t.getAccountNumber().equals(accountNumber))
-                .filter(t -> t.getTimestamp().isAfter(startDate) && t.getTimestamp().isBefore(endDate))
-                .collect(Collectors.toList());
-    }
-
-    public double getTotalDeposits(String accountNumber) {
-        return transactions.stream()
-                .filter(t -> t.getAccountNumber().equals(accountNumber))
-                .filter(t -> t.getType().equals("DEPOSIT") || t.getType().equals("TRANSFER_IN"))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-    }
-
-    public double getTotalWithdrawals(String accountNumber) {
-        return transactions.stream()
-                .filter(t -> t.getAccountNumber().equals(accountNumber))
-                .filter(t -> t.getType().equals("WITHDRAWAL") || t.getType().equals("TRANSFER_OUT"))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-    }
-
-    public int getTransactionCount(String accountNumber) {
-        return getTransactionsByAccount(accountNumber).size();
-    }
-
-    public void setTransactions(List<Transaction> transactions) {
-        this.transactions = new ArrayList<>(transactions);
-    }
-
-    public void clearTransactions() {
-        this.transactions.clear();
-    }
-}
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// TransactionService class. Safe for use from many threads: appends and the
+// bulk state changes take the write lock, queries share the read lock.
+class TransactionService {
+    // -Dbanking.verifyAggregates=true recomputes every aggregate read by scanning the
+    // account's history and reports any difference on stderr
+    private static final boolean VERIFY_AGGREGATES = Boolean.getBoolean("banking.verifyAggregates");
+    // -Dbanking.recentTransactions=N sets how many of each account's newest transactions
+    // are kept ready for the recent-transactions screen
+    private static final int RECENT_CAPACITY = Math.max(0, Integer.getInteger("banking.recentTransactions", 10));
+    private static final int QUERY_CHUNK = 4096; // Stored transactions read back per step of a query
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Resident transactions are held column-wise and materialized only when returned
+    private TransactionColumns transactions;
+    private boolean transactionsInTimeOrder = true; // Lets bank-wide range queries binary search
+
+    // Row ids of the resident transactions keyed by account and kept in timestamp order,
+    // so per-account queries cost O(that account's history) and date ranges O(log n + k)
+    private Map<String, RowList> transactionsByAccount;
+
+    // Row ids of the resident transactions partitioned by type, in row (log) order, so
+    // by-type listings and totals only touch the rows of that type
+    private Map<TransactionType, RowList> transactionsByType;
+
+    // Running per-account aggregates over the whole history. Streaming mode builds an
+    // account's aggregates from its history on first use and keeps them current after.
+    // This and the other lazily filled caches are concurrent maps, as queries fill them
+    // under the shared read lock.
+    private Map<String, AccountAggregates> aggregatesByAccount;
+
+    // Newest transactions per account, built and maintained the same way as the aggregates
+    private Map<String, RecentTransactions> recentByAccount;
+
+    // Last bank-wide statistics; dropped whenever the set of transactions changes
+    private volatile TransactionStatistics statistics;
+
+    // Streaming mode: history already on disk is only indexed by position and paged
+    // in on demand; the transactions list above holds just the recent, resident ones
+    private TransactionHistory history;
+    private int residentLimit;
+    private long indexedUpTo;
+    private PositionList persistedPositions; // Of the oldest resident rows, already on disk
+    private PositionList pagedPositions;
+    private Map<String, PositionList> pagedPositionsByAccount;
+
+    // Sealed log segments are not indexed at startup; an account's positions in them
+    // are looked up on first use, skipping segments that do not contain the account
+    private long historyStart;
+    private Map<String, PositionList> sealedPositionsByAccount;
+
+    // Count and total of each type among the transactions on disk, built from the
+    // history on first use and then kept up to date as resident rows page out
+    private volatile TypeTotals storedTypeTotals;
+
+    public TransactionService() {
+        this.transactions = new TransactionColumns();
+        this.transactionsByAccount = new HashMap<>();
+        this.transactionsByType = new EnumMap<>(TransactionType.class);
+        this.aggregatesByAccount = new ConcurrentHashMap<>();
+        this.recentByAccount = new ConcurrentHashMap<>();
+    }
+
+    public void addTransaction(Transaction transaction) {
+        lock.writeLock().lock();
+        try {
+            if (transaction != null) {
+                statistics = null;
+                int row = transactions.add(transaction);
+                trackTimeOrder(row);
+                index(transaction.getAccountNumber(), row);
+                RowList ofType = transactionsByType.computeIfAbsent(transaction.getType(), k -> new RowList());
+                ofType.add(ofType.size, row);
+                aggregate(transaction);
+                recent(transaction.getAccountNumber(), row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds a batch's transactions under one acquisition of the write lock
+    public void addTransactions(List<Transaction> newTransactions) {
+        lock.writeLock().lock();
+        try {
+            newTransactions.forEach(this::addTransaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Transaction> getAllTransactions() {
+        lock.readLock().lock();
+        try {
+            List<Transaction> all = new ArrayList<>();
+            if (history != null) {
+                all.addAll(pageIn(sealedPositions(null)));
+                all.addAll(pageIn(pagedPositions));
+            }
+            all.addAll(transactions.get(transactions.firstRow(), transactions.endRow()));
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One page of every transaction, in the same order as getAllTransactions. Only the
+    // page itself is read from disk or materialized.
+    public Page<Transaction> getTransactionsPage(String cursor, int pageSize) {
+        lock.readLock().lock();
+        try {
+            PositionList sealed = history != null ? sealedPositions(null) : null;
+            int firstRow = transactions.firstRow();
+            return page(sealed, pagedPositions, transactions.size(), i -> firstRow + i, cursor, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One page of an account's history, in the same order as getTransactionsByAccount
+    public Page<Transaction> getTransactionsPageByAccount(String accountNumber, String cursor, int pageSize) {
+        lock.readLock().lock();
+        try {
+            PositionList sealed = history != null ? sealedPositions(accountNumber) : null;
+            PositionList paged = history != null ? pagedPositionsByAccount.get(accountNumber) : null;
+            RowList resident = residentRows(accountNumber);
+            return page(sealed, paged, resident.size, i -> resident.values[i], cursor, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Transaction> getTransactionsByAccount(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>();
+            if (history != null) {
+                result.addAll(pageIn(sealedPositions(accountNumber)));
+                result.addAll(pageIn(pagedPositionsByAccount.get(accountNumber)));
+            }
+            RowList resident = residentRows(accountNumber);
+            for (int i = 0; i < resident.size; i++) {
+                result.add(transactions.get(resident.values[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The account's newest limit transactions, oldest first; a read of the ring unless
+    // more are asked for than it holds
+    public List<Transaction> getRecentTransactions(String accountNumber, int limit) {
+        lock.readLock().lock();
+        try {
+            if (limit > RECENT_CAPACITY) {
+                List<Transaction> all = getTransactionsByAccount(accountNumber);
+                return new ArrayList<>(all.subList(Math.max(0, all.size() - limit), all.size()));
+            }
+            return recentTransactions(accountNumber).newest(limit, transactions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Matching transactions, stored history first (streaming mode) and then resident
+    // rows. Resident candidates come from the most selective index, and the other
+    // criteria are checked against the columns, so only matching rows become Transaction
+    // objects; they are collected before the read lock is released. Stored history is
+    // read from disk lazily, a chunk at a time, as the stream is consumed.
+    public Stream<Transaction> query(TransactionQuery query) {
+        lock.readLock().lock();
+        try {
+            Stream<Transaction> resident = residentMatches(query, plan(query)).collect(Collectors.toList()).stream();
+            if (history == null) {
+                return resident;
+            }
+            String accountNumber = query.getAccountNumber();
+            PositionList paged = accountNumber != null ? pagedPositionsByAccount.get(accountNumber) : pagedPositions;
+            return Stream.concat(Stream.concat(storedMatches(query, sealedPositions(accountNumber)),
+                    storedMatches(query, paged)), resident);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // How query would find its resident candidates, for the search screen
+    public String explain(TransactionQuery query) {
+        lock.readLock().lock();
+        try {
+            QueryPlan plan = plan(query);
+            String explanation = plan.index + ": " + plan.size + " of " + transactions.size() + " resident rows";
+            if (history != null) {
+                String accountNumber = query.getAccountNumber();
+                PositionList paged = accountNumber != null ? pagedPositionsByAccount.get(accountNumber) : pagedPositions;
+                int stored = storedCandidates(query, sealedPositions(accountNumber)).size
+                        + storedCandidates(query, paged).size;
+                explanation += ", plus " + stored + " stored";
+            }
+            return explanation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The type name is matched ignoring case; an unknown type matches nothing
+    public List<Transaction> getTransactionsByType(String type) {
+        for (TransactionType candidate : TransactionType.values()) {
+            if (candidate.name().equalsIgnoreCase(type)) {
+                return getTransactionsByType(candidate);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    public List<Transaction> getTransactionsByType(TransactionType type) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = storedOfType(type);
+            RowList resident = residentRows(type);
+            for (int i = 0; i < resident.size; i++) {
+                result.add(transactions.get(resident.values[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bank-wide count and total of one type: running totals for the history on disk,
+    // plus the resident rows read from the type's partition of the columns without
+    // being materialized
+    public long getTransactionCountByType(TransactionType type) {
+        lock.readLock().lock();
+        try {
+            return storedTypeTotals().counts[type.ordinal()] + residentRows(type).size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getTotalByType(TransactionType type) {
+        lock.readLock().lock();
+        try {
+            double total = storedTypeTotals().totals[type.ordinal()];
+            RowList resident = residentRows(type);
+            for (int i = 0; i < resident.size; i++) {
+                total += transactions.amount(resident.values[i]);
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Transaction> getTransactionsByDateRange(String accountNumber,
+                                                        LocalDateTime startDate,
+                                                        LocalDateTime endDate) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>();
+            if (history != null) {
+                // Only page in transactions from segments whose time span meets the range
+                List<Transaction> paged = pageIn(sealedPositions(accountNumber, startDate, endDate));
+                paged.addAll(pageIn(overlapping(pagedPositionsByAccount.get(accountNumber), startDate, endDate)));
+                paged.stream()
+                        .filter(t -> t.getTimestamp().isAfter(startDate) && t.getTimestamp().isBefore(endDate))
+                        .forEach(result::add);
+            }
+            // Both ends exclusive, as before
+            RowList resident = residentRows(accountNumber);
+            IntUnaryOperator rowAt = i -> resident.values[i];
+            int from = firstAfter(resident.size, rowAt, startDate, true);
+            int to = firstAfter(resident.size, rowAt, endDate, false);
+            for (int i = from; i < to; i++) {
+                result.add(transactions.get(resident.values[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Every account's transactions in [start, end), oldest first, e.g. for an
+    // end-of-day report
+    public List<Transaction> getAllTransactionsByDateRange(LocalDateTime start, LocalDateTime end) {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>();
+            if (history != null) {
+                List<Transaction> paged = pageIn(PositionList.of(history.positionsBefore(null, historyStart, start, end)));
+                paged.addAll(pageIn(overlapping(pagedPositions, start, end)));
+                paged.stream()
+                        .filter(t -> !t.getTimestamp().isBefore(start) && t.getTimestamp().isBefore(end))
+                        .forEach(result::add);
+            }
+            int firstRow = transactions.firstRow();
+            if (transactionsInTimeOrder) {
+                IntUnaryOperator rowAt = i -> firstRow + i;
+                int from = firstAfter(transactions.size(), rowAt, start, false);
+                int to = firstAfter(transactions.size(), rowAt, end, false);
+                result.addAll(transactions.get(firstRow + from, firstRow + Math.max(from, to)));
+            } else {
+                // Only if the clock went backwards while the log was written
+                for (int row = firstRow; row < transactions.endRow(); row++) {
+                    if (compareTimestamp(row, start) >= 0 && compareTimestamp(row, end) < 0) {
+                        result.add(transactions.get(row));
+                    }
+                }
+            }
+            result.sort(Comparator.comparing(Transaction::getTimestamp)); // Stable, keeps log order for ties
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getTotalDeposits(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            double total = aggregates(accountNumber).getTotalDeposits();
+            if (VERIFY_AGGREGATES) {
+                verify(accountNumber, "deposits", total, scanTotalDeposits(accountNumber));
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getTotalWithdrawals(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            double total = aggregates(accountNumber).getTotalWithdrawals();
+            if (VERIFY_AGGREGATES) {
+                verify(accountNumber, "withdrawals", total, scanTotalWithdrawals(accountNumber));
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTransactionCount(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            int count = aggregates(accountNumber).getTransactionCount();
+            if (VERIFY_AGGREGATES) {
+                verify(accountNumber, "transaction count", count, countTransactions(accountNumber));
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bank-wide volume by type and day and the most active accounts. The scan runs in
+    // parallel over the resident columns and, in streaming mode, the history on disk;
+    // the result is reused until a transaction is added.
+    public TransactionStatistics getStatistics() {
+        lock.readLock().lock();
+        try {
+            TransactionStatistics cached = statistics;
+            if (cached != null) {
+                return cached;
+            }
+            List<TransactionStatistics.Part> parts = new ArrayList<>();
+            if (history != null) {
+                parts.add(historyPart(sealedPositions(null)));
+                parts.add(historyPart(pagedPositions));
+            }
+            // A few leaves per core: each leaf keeps per-account arrays, so there should not be many
+            TransactionColumns columns = transactions;
+            int firstRow = columns.firstRow();
+            int leafSize = Math.max(1 << 16, columns.size() / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+            parts.add(new TransactionStatistics.Part(columns.size(), leafSize, columns.accountCount(), columns::accountNumberOf,
+                    (from, to, tally) -> columns.scan(firstRow + from, firstRow + to,
+                            (row, accountId, typeCode, epochSecond, amount) -> tally.add(accountId, typeCode, epochSecond, amount))));
+            statistics = TransactionStatistics.compute(parts);
+            return statistics;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Totals, count and first/last activity of an account, kept up to date as
+    // transactions are added; the caller gets a copy taken under the read lock
+    public AccountAggregates getAggregates(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            AccountAggregates aggregates = aggregates(accountNumber);
+            if (VERIFY_AGGREGATES) {
+                List<Transaction> history = getTransactionsByAccount(accountNumber);
+                verify(accountNumber, "first activity", aggregates.getFirstActivity(), history.stream()
+                        .map(Transaction::getTimestamp).min(Comparator.naturalOrder()).orElse(null));
+                verify(accountNumber, "last activity", aggregates.getLastActivity(), history.stream()
+                        .map(Transaction::getTimestamp).max(Comparator.naturalOrder()).orElse(null));
+            }
+            return aggregates.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copies the loaded list into columns; callers should drop the list afterwards
+    public void setTransactions(List<Transaction> transactions) {
+        loadTransactions(transactions::forEach);
+    }
+
+    // Replaces the transactions with those the source passes to its sink, in order, e.g.
+    // fileManager::loadTransactions; each goes straight into the columns, so the loaded
+    // history is never held as a list of objects
+    public void loadTransactions(Consumer<Consumer<Transaction>> source) {
+        lock.writeLock().lock();
+        try {
+            this.transactions = new TransactionColumns();
+            this.transactionsByAccount = new HashMap<>();
+            this.transactionsByType = new EnumMap<>(TransactionType.class);
+            this.aggregatesByAccount = new ConcurrentHashMap<>();
+            this.recentByAccount = new ConcurrentHashMap<>();
+            this.statistics = null;
+            this.storedTypeTotals = null;
+            this.transactionsInTimeOrder = true;
+            this.history = null;
+            source.accept(this::addTransaction);
+            this.persistedPositions = null;
+            this.pagedPositions = null;
+            this.pagedPositionsByAccount = null;
+            this.sealedPositionsByAccount = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Index the history on disk instead of loading it; at most residentLimit recent
+    // transactions are kept as objects before they are paged out to the index
+    public void enableStreaming(TransactionHistory history, int residentLimit) {
+        lock.writeLock().lock();
+        try {
+            this.history = history;
+            this.residentLimit = residentLimit;
+            this.transactions = new TransactionColumns();
+            this.transactionsByAccount = new HashMap<>();
+            this.transactionsByType = new EnumMap<>(TransactionType.class);
+            this.aggregatesByAccount = new ConcurrentHashMap<>();
+            this.recentByAccount = new ConcurrentHashMap<>();
+            this.statistics = null;
+            this.storedTypeTotals = null;
+            this.transactionsInTimeOrder = true;
+            this.persistedPositions = new PositionList();
+            this.pagedPositions = new PositionList();
+            this.pagedPositionsByAccount = new HashMap<>();
+            this.sealedPositionsByAccount = new ConcurrentHashMap<>();
+            this.historyStart = history.activeSegmentStart();
+            this.indexedUpTo = history.indexTransactions(historyStart, this::indexPosition);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isStreaming() {
+        lock.readLock().lock();
+        try {
+            return history != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Call once new transactions are persisted: if the resident window is over its
+    // limit, drop just enough of the oldest persisted rows to bring it back down. The
+    // log is written in row order, so the i-th persisted position is the i-th oldest row.
+    public void pageOutIfFull() {
+        lock.writeLock().lock();
+        try {
+            if (history == null || transactions.size() <= residentLimit) {
+                return;
+            }
+            indexedUpTo = history.indexTransactions(indexedUpTo,
+                    (accountNumber, position) -> persistedPositions.add(position));
+            int pagedOut = Math.min(transactions.size() - residentLimit, persistedPositions.size);
+            int firstRow = transactions.firstRow();
+            for (int i = 0; i < pagedOut; i++) {
+                indexPosition(transactions.accountNumber(firstRow + i), persistedPositions.values[i]);
+            }
+            persistedPositions.removeFirst(pagedOut);
+
+            // The oldest resident rows go; per account they are normally the head of the
+            // time-ordered list, but removal is by row id in case they are not
+            int keepFrom = firstRow + pagedOut;
+            Set<String> accounts = new HashSet<>();
+            Set<TransactionType> types = EnumSet.noneOf(TransactionType.class);
+            TypeTotals stored = storedTypeTotals;
+            for (int row = transactions.firstRow(); row < keepFrom; row++) {
+                accounts.add(transactions.accountNumber(row));
+                types.add(transactions.type(row));
+                if (stored != null) {
+                    stored.add(transactions.type(row), transactions.amount(row));
+                }
+            }
+            for (String accountNumber : accounts) {
+                RecentTransactions recent = recentByAccount.get(accountNumber);
+                if (recent != null) {
+                    recent.pageOut(keepFrom, transactions);
+                }
+                RowList resident = transactionsByAccount.get(accountNumber);
+                resident.removeBelow(keepFrom);
+                if (resident.size == 0) {
+                    transactionsByAccount.remove(accountNumber);
+                }
+            }
+            for (TransactionType type : types) {
+                transactionsByType.get(type).removeBelow(keepFrom);
+            }
+            transactions.dropFirst(pagedOut);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clearTransactions() {
+        lock.writeLock().lock();
+        try {
+            this.transactions.clear();
+            this.transactionsByAccount.clear();
+            this.transactionsByType.clear();
+            this.aggregatesByAccount.clear();
+            this.recentByAccount.clear();
+            this.statistics = null;
+            this.storedTypeTotals = null;
+            this.transactionsInTimeOrder = true;
+            if (history != null) {
+                this.persistedPositions = new PositionList();
+                this.pagedPositions = new PositionList();
+                this.pagedPositionsByAccount = new HashMap<>();
+                this.sealedPositionsByAccount = new ConcurrentHashMap<>();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Appends in the usual case; a transaction older than the account's newest is
+    // inserted after any with the same timestamp, so ties keep log order
+    private void index(String accountNumber, int row) {
+        RowList account = transactionsByAccount.computeIfAbsent(accountNumber, k -> new RowList());
+        if (account.size == 0 || transactions.compareTimestamps(row, account.values[account.size - 1]) >= 0) {
+            account.add(account.size, row);
+        } else {
+            int low = 0;
+            int high = account.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (transactions.compareTimestamps(account.values[mid], row) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            account.add(low, row);
+        }
+    }
+
+    private void aggregate(Transaction transaction) {
+        if (history == null) {
+            aggregatesByAccount.computeIfAbsent(transaction.getAccountNumber(), k -> new AccountAggregates())
+                    .add(transaction);
+        } else {
+            // Accounts not yet built from history pick this one up when they are
+            AccountAggregates aggregates = aggregatesByAccount.get(transaction.getAccountNumber());
+            if (aggregates != null) {
+                aggregates.add(transaction);
+            }
+        }
+    }
+
+    private AccountAggregates aggregates(String accountNumber) {
+        AccountAggregates aggregates = aggregatesByAccount.get(accountNumber);
+        if (aggregates == null) {
+            aggregates = new AccountAggregates();
+            if (history != null) {
+                for (Transaction transaction : getTransactionsByAccount(accountNumber)) {
+                    aggregates.add(transaction);
+                }
+                aggregatesByAccount.put(accountNumber, aggregates);
+            }
+        }
+        return aggregates;
+    }
+
+    private void recent(String accountNumber, int row) {
+        if (history == null) {
+            recentByAccount.computeIfAbsent(accountNumber, k -> new RecentTransactions(RECENT_CAPACITY))
+                    .add(row, transactions);
+        } else {
+            RecentTransactions recent = recentByAccount.get(accountNumber);
+            if (recent != null) {
+                recent.add(row, transactions);
+            }
+        }
+    }
+
+    // In streaming mode a ring is built on first use, reading history only if too few
+    // of the account's rows are resident to fill it
+    private RecentTransactions recentTransactions(String accountNumber) {
+        RecentTransactions recent = recentByAccount.get(accountNumber);
+        if (recent == null) {
+            recent = new RecentTransactions(RECENT_CAPACITY);
+            if (history != null) {
+                RowList resident = residentRows(accountNumber);
+                if (resident.size < RECENT_CAPACITY) {
+                    List<Transaction> stored = pageIn(sealedPositions(accountNumber));
+                    stored.addAll(pageIn(pagedPositionsByAccount.get(accountNumber)));
+                    int wanted = RECENT_CAPACITY - resident.size;
+                    for (Transaction transaction : stored.subList(Math.max(0, stored.size() - wanted), stored.size())) {
+                        recent.addPagedOut(transaction);
+                    }
+                }
+                for (int i = Math.max(0, resident.size - RECENT_CAPACITY); i < resident.size; i++) {
+                    recent.add(resident.values[i], transactions);
+                }
+                recentByAccount.put(accountNumber, recent);
+            }
+        }
+        return recent;
+    }
+
+    // History on disk is read back in chunks of positions, several chunks at a time
+    private TransactionStatistics.Part historyPart(PositionList positions) {
+        return new TransactionStatistics.Part(positions.size, 1 << 12, (from, to, tally) -> {
+            for (Transaction transaction : history.readTransactions(positions.values, from, to)) {
+                tally.add(transaction.getAccountNumber(), transaction.getType().code(),
+                        transaction.getTimestamp().toEpochSecond(ZoneOffset.UTC), transaction.getAmount());
+            }
+        });
+    }
+
+    // Scan-based originals, kept to verify the aggregates against
+
+    private double scanTotalDeposits(String accountNumber) {
+        return getTransactionsByAccount(accountNumber).stream()
+                .filter(t -> t.getType().isCredit())
+                .mapToDouble(Transaction::getAmount)
+                .sum();
+    }
+
+    private double scanTotalWithdrawals(String accountNumber) {
+        return getTransactionsByAccount(accountNumber).stream()
+                .filter(t -> !t.getType().isCredit())
+                .mapToDouble(Transaction::getAmount)
+                .sum();
+    }
+
+    private int countTransactions(String accountNumber) {
+        int resident = residentRows(accountNumber).size;
+        if (history == null) {
+            return resident;
+        }
+        PositionList paged = pagedPositionsByAccount.get(accountNumber);
+        return resident + sealedPositions(accountNumber).size + (paged != null ? paged.size : 0);
+    }
+
+    // Sums may differ in the last bits when history was summed in a different order
+    private void verify(String accountNumber, String aggregate, double running, double scanned) {
+        if (Math.abs(running - scanned) > 0.005) {
+            reportMismatch(accountNumber, aggregate, running, scanned);
+        }
+    }
+
+    private void verify(String accountNumber, String aggregate, Object running, Object scanned) {
+        if (!Objects.equals(running, scanned)) {
+            reportMismatch(accountNumber, aggregate, running, scanned);
+        }
+    }
+
+    private void reportMismatch(String accountNumber, String aggregate, Object running, Object scanned) {
+        System.err.println("Aggregate mismatch for " + accountNumber + " " + aggregate
+                + ": running " + running + ", scanned " + scanned);
+    }
+
+    private void trackTimeOrder(int row) {
+        if (row > transactions.firstRow() && transactions.compareTimestamps(row, row - 1) < 0) {
+            transactionsInTimeOrder = false;
+        }
+    }
+
+    // Index of the first of count rows (sorted by timestamp, rowAt maps index to row id)
+    // strictly after time, or at or after it if not strict
+    private int firstAfter(int count, IntUnaryOperator rowAt, LocalDateTime time, boolean strict) {
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        int nano = time.getNano();
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = transactions.compareTimestamp(rowAt.applyAsInt(mid), epochSecond, nano);
+            if (cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareTimestamp(int row, LocalDateTime time) {
+        return transactions.compareTimestamp(row, time.toEpochSecond(ZoneOffset.UTC), time.getNano());
+    }
+
+    // A deleted customer's transactions stay in the log and are still indexed under
+    // the account number, exactly as a scan of the log would find them
+    private RowList residentRows(String accountNumber) {
+        return transactionsByAccount.getOrDefault(accountNumber, RowList.EMPTY);
+    }
+
+    private RowList residentRows(TransactionType type) {
+        return transactionsByType.getOrDefault(type, RowList.EMPTY);
+    }
+
+    // History on disk is not partitioned by type, so it is read and filtered
+    private List<Transaction> storedOfType(TransactionType type) {
+        List<Transaction> result = new ArrayList<>();
+        if (history != null) {
+            forEachStored(transaction -> {
+                if (transaction.getType() == type) {
+                    result.add(transaction);
+                }
+            });
+        }
+        return result;
+    }
+
+    private TypeTotals storedTypeTotals() {
+        TypeTotals totals = storedTypeTotals;
+        if (totals == null) {
+            totals = new TypeTotals();
+            if (history != null) {
+                forEachStored(totals::add);
+                storedTypeTotals = totals;
+            }
+        }
+        return totals;
+    }
+
+    // Reads the history on disk back in log order, a chunk at a time
+    private void forEachStored(Consumer<Transaction> action) {
+        for (PositionList positions : Arrays.asList(sealedPositions(null), pagedPositions)) {
+            for (int from = 0; from < positions.size; from += QUERY_CHUNK) {
+                history.readTransactions(positions.values, from, Math.min(positions.size, from + QUERY_CHUNK))
+                        .forEach(action);
+            }
+        }
+    }
+
+    private void indexPosition(String accountNumber, long position) {
+        pagedPositions.add(position);
+        pagedPositionsByAccount.computeIfAbsent(accountNumber, k -> new PositionList()).add(position);
+    }
+
+    // Every account's positions are cached under "", as the map takes no null key
+    private PositionList sealedPositions(String accountNumber) {
+        return sealedPositionsByAccount.computeIfAbsent(accountNumber != null ? accountNumber : "",
+                k -> PositionList.of(history.positionsBefore(accountNumber, historyStart)));
+    }
+
+    // The account's sealed positions in segments meeting [start, end]. A cached list is
+    // filtered; otherwise the history skips the other segments without opening them,
+    // and the partial result is not cached.
+    private PositionList sealedPositions(String accountNumber, LocalDateTime start, LocalDateTime end) {
+        PositionList cached = sealedPositionsByAccount.get(accountNumber != null ? accountNumber : "");
+        if (cached != null) {
+            return overlapping(cached, start, end);
+        }
+        return PositionList.of(history.positionsBefore(accountNumber, historyStart, start, end));
+    }
+
+    private PositionList overlapping(PositionList positions, LocalDateTime start, LocalDateTime end) {
+        PositionList result = new PositionList();
+        for (int i = 0; positions != null && i < positions.size; i++) {
+            if (history.segmentOverlaps(positions.values[i], start, end)) {
+                result.add(positions.values[i]);
+            }
+        }
+        return result;
+    }
+
+    // The planner: the account's time-ordered rows, the rows of the wanted types or a
+    // time slice of all rows, whichever is smallest, narrowed by binary search when the
+    // query has a time range
+    private QueryPlan plan(TransactionQuery query) {
+        TransactionColumns columns = transactions;
+        int firstRow = columns.firstRow();
+        QueryPlan best = QueryPlan.range("full scan", 0, columns.size(), i -> firstRow + i);
+
+        if (query.hasTimeRange() && transactionsInTimeOrder) {
+            best = cheaper(best, narrow("time index", columns.size(), i -> firstRow + i, query));
+        }
+        if (query.getAccountNumber() != null) {
+            RowList rows = residentRows(query.getAccountNumber());
+            best = cheaper(best, narrow(query.hasTimeRange() ? "account index with time range" : "account index",
+                    rows.size, i -> rows.values[i], query));
+        }
+        if (query.getTypes() != null) {
+            // A type's rows are in row order, which is time order only if the log is
+            boolean timeRange = query.hasTimeRange() && transactionsInTimeOrder;
+            List<QueryPlan> parts = new ArrayList<>();
+            for (TransactionType type : query.getTypes()) {
+                RowList rows = residentRows(type);
+                parts.add(timeRange ? narrow("", rows.size, i -> rows.values[i], query)
+                        : QueryPlan.range("", 0, rows.size, i -> rows.values[i]));
+            }
+            best = cheaper(best, QueryPlan.union(timeRange ? "type index with time range" : "type index", parts));
+        }
+        return best;
+    }
+
+    private QueryPlan narrow(String index, int count, IntUnaryOperator rowAt, TransactionQuery query) {
+        int from = query.getFrom() != null ? firstAfter(count, rowAt, query.getFrom(), false) : 0;
+        int to = query.getTo() != null ? firstAfter(count, rowAt, query.getTo(), false) : count;
+        return QueryPlan.range(index, from, Math.max(0, to - from), rowAt);
+    }
+
+    private static QueryPlan cheaper(QueryPlan a, QueryPlan b) {
+        return b.size < a.size ? b : a;
+    }
+
+    private Stream<Transaction> residentMatches(TransactionQuery query, QueryPlan plan) {
+        TransactionColumns columns = transactions;
+        RowFilter filter = new RowFilter(columns, query);
+        if (filter.impossible) {
+            return Stream.empty();
+        }
+        return plan.rows.get()
+                .filter(filter)
+                .mapToObj(columns::get);
+    }
+
+    // Stored history is read back a chunk at a time as the stream is consumed. Position
+    // lists are only ever appended to, so the prefix captured here stays valid after
+    // the lock is released.
+    private Stream<Transaction> storedMatches(TransactionQuery query, PositionList positions) {
+        PositionList candidates = storedCandidates(query, positions);
+        TransactionHistory history = this.history;
+        long[] values = candidates.values;
+        int size = candidates.size;
+        int chunks = (size + QUERY_CHUNK - 1) / QUERY_CHUNK;
+        return IntStream.range(0, chunks)
+                .boxed()
+                .flatMap(chunk -> history.readTransactions(values, chunk * QUERY_CHUNK,
+                        Math.min(size, (chunk + 1) * QUERY_CHUNK)).stream())
+                .filter(query::matches);
+    }
+
+    // Sealed segments outside the time range are skipped without being read
+    private PositionList storedCandidates(TransactionQuery query, PositionList positions) {
+        if (positions == null) {
+            return new PositionList();
+        }
+        if (!query.hasTimeRange()) {
+            return positions;
+        }
+        return overlapping(positions,
+                query.getFrom() != null ? query.getFrom() : LocalDateTime.MIN,
+                query.getTo() != null ? query.getTo() : LocalDateTime.MAX);
+    }
+
+    // A listing is the sealed positions, then the paged-out positions, then the resident
+    // rows. Paging out moves the oldest resident rows to the end of the paged positions,
+    // so an offset into that sequence stays valid as the cursor between pages.
+    private Page<Transaction> page(PositionList sealed, PositionList paged, int residentCount,
+                                   IntUnaryOperator rowAt, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long from = parseCursor(cursor);
+        int sealedCount = sealed != null ? sealed.size : 0;
+        int pagedCount = history != null && paged != null ? paged.size : 0;
+        long total = (long) sealedCount + pagedCount + residentCount;
+        long to = Math.min(total, from + pageSize);
+
+        List<Transaction> items = new ArrayList<>((int) Math.max(0, to - from));
+        readRange(sealed, 0, from, to, items);
+        readRange(pagedCount > 0 ? paged : null, sealedCount, from, to, items);
+        long residentBase = (long) sealedCount + pagedCount;
+        for (long i = Math.max(from, residentBase); i < to; i++) {
+            items.add(transactions.get(rowAt.applyAsInt((int) (i - residentBase))));
+        }
+        return new Page<>(items, to < total ? Long.toString(to) : null);
+    }
+
+    // Reads the part of [from, to) that falls in positions, which start at offset base
+    private void readRange(PositionList positions, long base, long from, long to, List<Transaction> out) {
+        if (positions == null) {
+            return;
+        }
+        int start = (int) Math.max(0, from - base);
+        int end = (int) Math.min(positions.size, to - base);
+        if (start < end) {
+            out.addAll(history.readTransactions(positions.values, start, end));
+        }
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            long offset = Long.parseLong(cursor);
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    private List<Transaction> pageIn(PositionList positions) {
+        if (positions == null || positions.size == 0) {
+            return new ArrayList<>();
+        }
+        return history.readTransactions(positions.values, 0, positions.size);
+    }
+
+    // The candidate rows of a query, produced on demand
+    private static class QueryPlan {
+        private final String index;
+        private final int size;
+        private final Supplier<IntStream> rows;
+
+        private QueryPlan(String index, int size, Supplier<IntStream> rows) {
+            this.index = index;
+            this.size = size;
+            this.rows = rows;
+        }
+
+        // Indexes from..from + size, mapped to row ids by rowAt
+        static QueryPlan range(String index, int from, int size, IntUnaryOperator rowAt) {
+            return new QueryPlan(index, size, () -> IntStream.range(from, from + size).map(rowAt));
+        }
+
+        // The rows of several disjoint plans, put back in row order
+        static QueryPlan union(String index, List<QueryPlan> parts) {
+            if (parts.size() == 1) {
+                return new QueryPlan(index, parts.get(0).size, parts.get(0).rows);
+            }
+            int size = parts.stream().mapToInt(part -> part.size).sum();
+            return new QueryPlan(index, size, () -> parts.stream().flatMapToInt(part -> part.rows.get()).sorted());
+        }
+    }
+
+    // A query's criteria resolved against one set of columns, checked without
+    // materializing the row
+    private static class RowFilter implements IntPredicate {
+        private final TransactionColumns columns;
+        private final TransactionQuery query;
+        private final int accountId;
+        private final int counterpartyId;
+        private final long fromSecond;
+        private final int fromNano;
+        private final long toSecond;
+        private final int toNano;
+        private final boolean impossible; // An account the columns have never seen
+
+        RowFilter(TransactionColumns columns, TransactionQuery query) {
+            this.columns = columns;
+            this.query = query;
+            this.accountId = query.getAccountNumber() != null ? columns.findAccountId(query.getAccountNumber()) : -1;
+            this.counterpartyId = query.getCounterparty() != null ? columns.findAccountId(query.getCounterparty()) : -1;
+            this.impossible = (query.getAccountNumber() != null && accountId < 0)
+                    || (query.getCounterparty() != null && counterpartyId < 0);
+            this.fromSecond = query.getFrom() != null ? query.getFrom().toEpochSecond(ZoneOffset.UTC) : 0;
+            this.fromNano = query.getFrom() != null ? query.getFrom().getNano() : 0;
+            this.toSecond = query.getTo() != null ? query.getTo().toEpochSecond(ZoneOffset.UTC) : 0;
+            this.toNano = query.getTo() != null ? query.getTo().getNano() : 0;
+        }
+
+        @Override
+        public boolean test(int row) {
+            if (query.getAccountNumber() != null && columns.accountId(row) != accountId) {
+                return false;
+            }
+            if (query.getTypes() != null && !query.getTypes().contains(columns.type(row))) {
+                return false;
+            }
+            double amount = columns.amount(row);
+            if (amount < query.getMinAmount() || amount > query.getMaxAmount()) {
+                return false;
+            }
+            if (query.getCounterparty() != null && columns.counterpartyId(row) != counterpartyId) {
+                return false;
+            }
+            return (query.getFrom() == null || columns.compareTimestamp(row, fromSecond, fromNano) >= 0)
+                    && (query.getTo() == null || columns.compareTimestamp(row, toSecond, toNano) < 0);
+        }
+    }
+
+    // Growable list of resident row ids, 4 bytes per transaction
+    private static class RowList {
+        private static final RowList EMPTY = new RowList();
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int index, int row) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = row;
+            size++;
+        }
+
+        void removeBelow(int row) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[i] >= row) {
+                    values[kept++] = values[i];
+                }
+            }
+            size = kept;
+        }
+    }
+
+    // Count and total of each transaction type, by ordinal
+    private static class TypeTotals {
+        private final long[] counts = new long[TransactionType.values().length];
+        private final double[] totals = new double[TransactionType.values().length];
+
+        void add(TransactionType type, double amount) {
+            counts[type.ordinal()]++;
+            totals[type.ordinal()] += amount;
+        }
+
+        void add(Transaction transaction) {
+            add(transaction.getType(), transaction.getAmount());
+        }
+    }
+
+    // Growable list of log positions, 8 bytes per paged-out transaction
+    private static class PositionList {
+        private long[] values = new long[4];
+        private int size;
+
+        static PositionList of(long[] positions) {
+            PositionList list = new PositionList();
+            list.values = positions.length > 0 ? positions : list.values;
+            list.size = positions.length;
+            return list;
+        }
+
+        void add(long position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        void removeFirst(int count) {
+            System.arraycopy(values, count, values, 0, size - count);
+            size -= count;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+// Bank-wide transaction figures: volume by type and by day and the most active
+// accounts. Computed by a fork-join scan in which every leaf tallies its own range
+// of rows and the partial tallies are merged on the way back up.
+class TransactionStatistics {
+    public static final int TOP_ACCOUNTS = 10;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final long transactionCount;
+    private final long[] countByType;
+    private final double[] amountByType;
+    private final NavigableMap<LocalDate, Volume> volumeByDay;
+    private final Map<String, Volume> topAccounts;
+
+    // Reads rows [from, to) of one part of the history into a tally
+    interface RowSource {
+        void accumulate(int from, int to, Tally tally);
+    }
+
+    // A run of rows the scan may split into leaves of at most leafSize rows. Rows that
+    // identify accounts by a dense id (0 until accountCount) are tallied in arrays.
+    static class Part {
+        private final int size;
+        private final int leafSize;
+        private final int accountCount;
+        private final IntFunction<String> accountNumbers;
+        private final RowSource source;
+
+        Part(int size, int leafSize, RowSource source) {
+            this(size, leafSize, 0, null, source);
+        }
+
+        Part(int size, int leafSize, int accountCount, IntFunction<String> accountNumbers, RowSource source) {
+            this.size = size;
+            this.leafSize = leafSize;
+            this.accountCount = accountCount;
+            this.accountNumbers = accountNumbers;
+            this.source = source;
+        }
+    }
+
+    // Transaction count and amount for one type, day or account
+    static class Volume {
+        private long count;
+        private double amount;
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        private void add(double value) {
+            count++;
+            amount += value;
+        }
+
+        private Volume merge(Volume other) {
+            count += other.count;
+            amount += other.amount;
+            return this;
+        }
+    }
+
+    // Running totals of one leaf of the scan
+    static class Tally {
+        private final Part part;
+        private long transactionCount;
+        private final long[] countByType = new long[TYPES.length];
+        private final double[] amountByType = new double[TYPES.length];
+        private final Map<Long, Volume> volumeByDay = new HashMap<>();
+
+        // Per account: arrays indexed by the part's account ids, or a map by account number
+        private long[] countByAccount;
+        private double[] amountByAccount;
+        private final Map<String, Volume> volumeByAccount = new HashMap<>();
+
+        // History is nearly always in time order, so the day rarely changes between rows
+        private long lastDay = Long.MIN_VALUE;
+        private Volume lastDayVolume;
+
+        Tally(Part part) {
+            this.part = part;
+            if (part != null && part.accountCount > 0) {
+                countByAccount = new long[part.accountCount];
+                amountByAccount = new double[part.accountCount];
+            }
+        }
+
+        void add(int accountId, int typeCode, long epochSecond, double amount) {
+            countByAccount[accountId]++;
+            amountByAccount[accountId] += amount;
+            addTotals(typeCode, epochSecond, amount);
+        }
+
+        void add(String accountNumber, int typeCode, long epochSecond, double amount) {
+            volumeByAccount.computeIfAbsent(accountNumber, k -> new Volume()).add(amount);
+            addTotals(typeCode, epochSecond, amount);
+        }
+
+        private void addTotals(int typeCode, long epochSecond, double amount) {
+            transactionCount++;
+            countByType[typeCode]++;
+            amountByType[typeCode] += amount;
+
+            long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+            if (day != lastDay) {
+                lastDay = day;
+                lastDayVolume = volumeByDay.computeIfAbsent(day, k -> new Volume());
+            }
+            lastDayVolume.add(amount);
+        }
+
+        private Tally merge(Tally other) {
+            if (part != other.part) {
+                // Different parts number accounts differently, so only names can be matched
+                spill();
+                other.spill();
+            }
+            // Fold the smaller maps into the larger ones
+            Tally into = volumeByAccount.size() >= other.volumeByAccount.size() ? this : other;
+            Tally from = into == this ? other : this;
+            into.transactionCount += from.transactionCount;
+            for (int i = 0; i < TYPES.length; i++) {
+                into.countByType[i] += from.countByType[i];
+                into.amountByType[i] += from.amountByType[i];
+            }
+            if (from.countByAccount != null) {
+                for (int i = 0; i < from.countByAccount.length; i++) {
+                    into.countByAccount[i] += from.countByAccount[i];
+                    into.amountByAccount[i] += from.amountByAccount[i];
+                }
+            }
+            from.volumeByDay.forEach((day, volume) -> into.volumeByDay.merge(day, volume, Volume::merge));
+            from.volumeByAccount.forEach((account, volume) -> into.volumeByAccount.merge(account, volume, Volume::merge));
+            into.lastDay = Long.MIN_VALUE; // The cached day volume may now be stale
+            return into;
+        }
+
+        // Moves the per-id totals into the map by account number
+        private void spill() {
+            if (countByAccount == null) {
+                return;
+            }
+            for (int i = 0; i < countByAccount.length; i++) {
+                if (countByAccount[i] > 0) {
+                    Volume volume = volumeByAccount.computeIfAbsent(part.accountNumbers.apply(i), k -> new Volume());
+                    volume.count += countByAccount[i];
+                    volume.amount += amountByAccount[i];
+                }
+            }
+            countByAccount = null;
+            amountByAccount = null;
+        }
+    }
+
+    private TransactionStatistics(Tally tally) {
+        this.transactionCount = tally.transactionCount;
+        this.countByType = tally.countByType;
+        this.amountByType = tally.amountByType;
+
+        this.volumeByDay = new TreeMap<>();
+        tally.volumeByDay.forEach((day, volume) -> volumeByDay.put(LocalDate.ofEpochDay(day), volume));
+
+        // Most transactions first, then the larger volume, then account number
+        PriorityQueue<Map.Entry<String, Volume>> top = new PriorityQueue<>(TOP_ACCOUNTS + 1, TransactionStatistics::compareActivity);
+        for (Map.Entry<String, Volume> entry : tally.volumeByAccount.entrySet()) {
+            offer(top, entry);
+        }
+        for (int i = 0; tally.countByAccount != null && i < tally.countByAccount.length; i++) {
+            // Only accounts that would make the list are given a name and a Volume
+            if (tally.countByAccount[i] > 0 && (top.size() < TOP_ACCOUNTS || tally.countByAccount[i] >= top.peek().getValue().count)) {
+                Volume volume = new Volume();
+                volume.count = tally.countByAccount[i];
+                volume.amount = tally.amountByAccount[i];
+                offer(top, new AbstractMap.SimpleImmutableEntry<>(tally.part.accountNumbers.apply(i), volume));
+            }
+        }
+        List<Map.Entry<String, Volume>> ranked = new ArrayList<>(top);
+        ranked.sort(Collections.reverseOrder(TransactionStatistics::compareActivity));
+        this.topAccounts = new LinkedHashMap<>();
+        for (Map.Entry<String, Volume> entry : ranked) {
+            topAccounts.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Each part is scanned in parallel on the common pool, one part after another
+    public static TransactionStatistics compute(List<Part> parts) {
+        Tally total = new Tally(null);
+        for (Part part : parts) {
+            if (part.size > 0) {
+                total = total.merge(ForkJoinPool.commonPool().invoke(new ScanTask(part, 0, part.size)));
+            }
+        }
+        return new TransactionStatistics(total);
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getCount(TransactionType type) {
+        return countByType[type.ordinal()];
+    }
+
+    public double getAmount(TransactionType type) {
+        return amountByType[type.ordinal()];
+    }
+
+    public NavigableMap<LocalDate, Volume> getVolumeByDay() {
+        return volumeByDay;
+    }
+
+    // Up to TOP_ACCOUNTS accounts, most active first
+    public Map<String, Volume> getTopAccounts() {
+        return topAccounts;
+    }
+
+    private static void offer(PriorityQueue<Map.Entry<String, Volume>> top, Map.Entry<String, Volume> entry) {
+        top.add(entry);
+        if (top.size() > TOP_ACCOUNTS) {
+            top.poll();
+        }
+    }
+
+    private static int compareActivity(Map.Entry<String, Volume> a, Map.Entry<String, Volume> b) {
+        int cmp = Long.compare(a.getValue().count, b.getValue().count);
+        if (cmp == 0) {
+            cmp = Double.compare(a.getValue().amount, b.getValue().amount);
+        }
+        return cmp != 0 ? cmp : b.getKey().compareTo(a.getKey());
+    }
+
+    private static class ScanTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final Part part;
+        private final int from;
+        private final int to;
+
+        ScanTask(Part part, int from, int to) {
+            this.part = part;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= part.leafSize) {
+                Tally tally = new Tally(part);
+                part.source.accumulate(from, to, tally);
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(part, from, middle);
+            left.fork();
+            Tally right = new ScanTask(part, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// The kinds of transaction the bank records. The order is persisted as a one-byte
+// code by BinaryTransactionStore, so only ever append to it.
+public enum TransactionType {
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER_IN,
+    TRANSFER_OUT;
+
+    private static final TransactionType[] BY_CODE = values();
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static TransactionType fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown transaction type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    // Money coming into the account
+    public boolean isCredit() {
+        return this == DEPOSIT || this == TRANSFER_IN;
+    }
+
+    public boolean isTransfer() {
+        return this == TRANSFER_IN || this == TRANSFER_OUT;
+    }
+
+    // The fixed text in front of the counterparty's account number
+    public String transferPrefix() {
+        switch (this) {
+            case TRANSFER_IN:
+                return "Transfer from ";
+            case TRANSFER_OUT:
+                return "Transfer to ";
+            default:
+                return null;
+        }
+    }
+}